@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.canvas;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.CanvasModule;
+import io.realm.draw.models.PointStorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Canvases are opened and closed on the main thread, where their background maintenance runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CanvasSessionsTest {
+    private static final int MAX_OPEN = 3;
+
+    private final List<String> opened = new ArrayList<>();
+    private final DrawMetrics metrics = new DrawMetrics();
+    private File cacheDirectory;
+    private CanvasSessions sessions;
+
+    @Before
+    public void setUp() {
+        Realm.init(InstrumentationRegistry.getTargetContext());
+        cacheDirectory = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "canvas-sessions-test");
+        sessions = new CanvasSessions(new CanvasSessions.Opener() {
+            @Override
+            public RealmConfiguration configurationOf(String canvasId) {
+                return new RealmConfiguration.Builder()
+                        .name("canvas-sessions-test-" + canvasId + ".realm")
+                        .inMemory()
+                        .modules(new CanvasModule())
+                        .build();
+            }
+
+            @Override
+            public CanvasSession open(String canvasId) {
+                opened.add(canvasId);
+                return new CanvasSession(canvasId, configurationOf(canvasId), PointStorage.LEGACY, metrics,
+                        new File(cacheDirectory, canvasId), 0, 0, "author");
+            }
+        }, MAX_OPEN);
+    }
+
+    @After
+    public void tearDown() {
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                sessions.close();
+            }
+        });
+        CanvasSession.deleteCache(cacheDirectory);
+    }
+
+    @Test
+    public void openCanvasIsNotOpenedAgain() {
+        final CanvasSession[] shown = new CanvasSession[2];
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                shown[0] = sessions.get("a");
+                sessions.get("b");
+                shown[1] = sessions.get("a");
+            }
+        });
+
+        assertSame(shown[0], shown[1]);
+        assertEquals(Arrays.asList("a", "b"), opened);
+    }
+
+    @Test
+    public void leastRecentlyShownCanvasIsClosed() {
+        final List<String> openIds = new ArrayList<>();
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                sessions.get("a");
+                sessions.get("b");
+                sessions.get("c");
+                // Showing a again makes b the least recently shown.
+                sessions.get("a");
+                sessions.get("d");
+                openIds.addAll(sessions.getOpenIds());
+                sessions.get("b");
+            }
+        });
+
+        assertEquals(Arrays.asList("c", "a", "d"), openIds);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "b"), opened);
+        assertFalse(sessions.isOpen("c"));
+        assertTrue(sessions.isOpen("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keepsAtLeastTwoCanvasesOpen() {
+        new CanvasSessions(null, 1);
+    }
+
+    private static void onMainThread(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.CanvasModule;
+import io.realm.draw.models.CanvasState;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.Palette;
+import io.realm.draw.models.PointStorage;
+import io.realm.draw.models.StrokeOperation;
+import io.realm.draw.models.UndoHistory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StrokeWriterTest {
+    private static final String AUTHOR = "author";
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final int POINTS = 100;
+
+    private RealmConfiguration configuration;
+    // Keeps the in-memory Realm alive while the writer opens and closes its own instance.
+    private Realm realm;
+    private StrokeWriter writer;
+
+    @Before
+    public void setUp() {
+        Realm.init(InstrumentationRegistry.getTargetContext());
+        configuration = new RealmConfiguration.Builder()
+                .name("stroke-writer-test.realm")
+                .inMemory()
+                .modules(new CanvasModule())
+                .build();
+        realm = Realm.getInstance(configuration);
+        writer = new StrokeWriter(configuration, PointStorage.LEGACY, null, new DrawMetrics(), AUTHOR);
+        writer.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writer.close();
+        writer.join();
+        realm.close();
+    }
+
+    @Test
+    public void completingAStrokeWipedMidDrawDoesNotRecreateIt() throws InterruptedException {
+        writer.submit(StrokeCommand.begin("stroke", Palette.DEFAULT_ID, 10, 20, 0));
+        awaitStroke("stroke");
+
+        // Another client wipes the canvas, and its old generation is deleted.
+        realm.beginTransaction();
+        CanvasState.startNewGeneration(realm);
+        realm.where(DrawPath.class).findAll().deleteAllFromRealm();
+        realm.commitTransaction();
+
+        writer.submit(StrokeCommand.complete("stroke", Palette.DEFAULT_ID));
+        writer.close();
+        writer.join();
+        realm.refresh();
+
+        assertEquals(0, realm.where(DrawPath.class).count());
+        assertEquals(0, realm.where(StrokeOperation.class).count());
+        realm.beginTransaction();
+        assertFalse(UndoHistory.undo(realm, AUTHOR));
+        realm.cancelTransaction();
+    }
+
+    @Test
+    public void completingAStrokeRecordsIt() throws InterruptedException {
+        writer.submit(StrokeCommand.begin("stroke", Palette.DEFAULT_ID, 10, 20, 0));
+        writer.submit(StrokeCommand.complete("stroke", Palette.DEFAULT_ID));
+        writer.close();
+        writer.join();
+        realm.refresh();
+
+        final DrawPath path = realm.where(DrawPath.class).equalTo(DrawPath.FIELD_ID, "stroke").findFirst();
+        assertTrue(path.isCompleted());
+        assertEquals(1, path.getPoints().size());
+        assertEquals(1, realm.where(StrokeOperation.class).count());
+    }
+
+    @Test
+    public void appendsAreWrittenInOrder() throws InterruptedException {
+        writer.submit(StrokeCommand.begin("stroke", Palette.DEFAULT_ID, 0, 0, 0));
+        for (int i = 1; i < POINTS; i++) {
+            final StrokeCommand append = StrokeCommand.append("stroke", Palette.DEFAULT_ID, 1);
+            append.points[0] = i;
+            append.points[1] = i;
+            append.pointCount = 1;
+            writer.submit(append);
+        }
+        writer.submit(StrokeCommand.complete("stroke", Palette.DEFAULT_ID));
+        writer.close();
+        writer.join();
+        realm.refresh();
+
+        final DrawPath path = realm.where(DrawPath.class).equalTo(DrawPath.FIELD_ID, "stroke").findFirst();
+        assertEquals(POINTS, path.getPoints().size());
+        for (int i = 0; i < POINTS; i++) {
+            assertEquals(i, path.getPoints().get(i).getX(), 0);
+        }
+    }
+
+    @Test
+    public void wipeIsOrderedAfterStrokesSubmittedBefore() throws InterruptedException {
+        writer.submit(StrokeCommand.begin("before", Palette.DEFAULT_ID, 10, 20, 0));
+        writer.submit(StrokeCommand.complete("before", Palette.DEFAULT_ID));
+        writer.submit(StrokeCommand.wipe());
+        writer.submit(StrokeCommand.begin("after", Palette.DEFAULT_ID, 10, 20, 0));
+        writer.submit(StrokeCommand.complete("after", Palette.DEFAULT_ID));
+        writer.close();
+        writer.join();
+        realm.refresh();
+
+        final long generation = CanvasState.currentGeneration(realm);
+        assertEquals(CanvasState.FIRST_GENERATION + 1, generation);
+        final DrawPath visible = CanvasState.visiblePaths(realm, generation).findFirst();
+        assertEquals("after", visible.getId());
+        assertEquals(1, CanvasState.visiblePaths(realm, generation).count());
+    }
+
+    private void awaitStroke(String strokeId) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (realm.where(DrawPath.class).equalTo(DrawPath.FIELD_ID, strokeId).count() == 0) {
+            assertTrue("Stroke " + strokeId + " was not written", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            realm.refresh();
+        }
+    }
+}
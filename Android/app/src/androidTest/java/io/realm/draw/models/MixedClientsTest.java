@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * How wipes here and clears on clients that do not know about generations work out together.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MixedClientsTest {
+    private static final String AUTHOR = "author";
+
+    private Realm realm;
+
+    @Before
+    public void setUp() {
+        Realm.init(InstrumentationRegistry.getTargetContext());
+        final RealmConfiguration configuration = new RealmConfiguration.Builder()
+                .name("mixed-clients-test.realm")
+                .inMemory()
+                .modules(new CanvasModule())
+                .build();
+        realm = Realm.getInstance(configuration);
+        realm.beginTransaction();
+    }
+
+    @After
+    public void tearDown() {
+        realm.cancelTransaction();
+        realm.close();
+    }
+
+    @Test
+    public void wipeHidesForeignStrokesAndCompactionDeletesThem() {
+        stroke(null, CanvasState.NO_GENERATION);
+        stroke("own", CanvasState.FIRST_GENERATION);
+
+        final long generation = CanvasState.startNewGeneration(realm);
+
+        assertEquals(0, CanvasState.visiblePaths(realm, generation).count());
+        // Clients without generations still draw both until they are deleted.
+        assertEquals(2, realm.where(DrawPath.class).count());
+        run(new HistoryCompaction.DeleteBatch());
+        assertEquals(0, realm.where(DrawPath.class).count());
+        assertEquals(0, realm.where(DrawPoint.class).count());
+    }
+
+    @Test
+    public void foreignStrokesAreMovedIntoTheCurrentGeneration() {
+        final long generation = CanvasState.startNewGeneration(realm);
+        final DrawPath foreign = stroke(null, CanvasState.NO_GENERATION);
+
+        run(new HistoryCompaction.AdoptBatch());
+
+        assertEquals(generation, foreign.getGeneration());
+        assertEquals(1, CanvasState.visiblePaths(realm, generation).count());
+        // The next wipe hides it like any other stroke.
+        final long next = CanvasState.startNewGeneration(realm);
+        assertEquals(0, CanvasState.visiblePaths(realm, next).count());
+    }
+
+    @Test
+    public void foreignStrokesDrawnAfterAWipeStay() {
+        final long generation = CanvasState.startNewGeneration(realm);
+        stroke(null, CanvasState.NO_GENERATION);
+
+        run(new HistoryCompaction.DeleteBatch());
+
+        assertEquals(1, CanvasState.visiblePaths(realm, generation).count());
+    }
+
+    @Test
+    public void foreignClearKeepsTheGeneration() {
+        final long generation = CanvasState.startNewGeneration(realm);
+        stroke("own", generation);
+        UndoHistory.recordStroke(realm, AUTHOR, "own", generation);
+        stroke("undone", -generation);
+
+        // What a clear on an older client does: it only knows these classes.
+        realm.delete(DrawPath.class);
+        realm.delete(DrawPoint.class);
+
+        assertEquals(generation, CanvasState.currentGeneration(realm));
+        assertFalse(UndoHistory.undo(realm, AUTHOR));
+        stroke("next", generation);
+        assertEquals(1, CanvasState.visiblePaths(realm, generation).count());
+    }
+
+    private DrawPath stroke(String id, long generation) {
+        final DrawPath path = realm.createObject(DrawPath.class);
+        path.setId(id);
+        path.setGeneration(generation);
+        path.setCompleted(true);
+        path.setColor(Palette.nameOf(Palette.DEFAULT_ID));
+        final DrawPoint point = realm.createObject(DrawPoint.class);
+        point.setX(10);
+        point.setY(20);
+        path.getPoints().add(point);
+        return path;
+    }
+
+    private void run(BatchedPathUpdate.Batch batch) {
+        batch.update(realm, batch.query(realm).createSnapshot());
+    }
+}
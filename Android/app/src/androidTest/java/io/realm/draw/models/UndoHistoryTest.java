@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class UndoHistoryTest {
+    private static final String AUTHOR = "author";
+    private static final String OTHER_AUTHOR = "other";
+    private static final int SMALL_CANVAS = 10;
+    private static final int LARGE_CANVAS = 10000;
+    private static final int REPEATS = 500;
+
+    private Realm realm;
+
+    @Before
+    public void setUp() {
+        Realm.init(InstrumentationRegistry.getTargetContext());
+        final RealmConfiguration configuration = new RealmConfiguration.Builder()
+                .name("undo-history-test.realm")
+                .inMemory()
+                .modules(new CanvasModule())
+                .build();
+        realm = Realm.getInstance(configuration);
+        realm.beginTransaction();
+    }
+
+    @After
+    public void tearDown() {
+        realm.cancelTransaction();
+        realm.close();
+    }
+
+    @Test
+    public void undoAndRedoMoveTheLastStroke() {
+        addStrokes(AUTHOR, 2);
+
+        assertTrue(UndoHistory.undo(realm, AUTHOR));
+        assertEquals(1, visibleCount());
+        assertTrue(UndoHistory.redo(realm, AUTHOR));
+        assertEquals(2, visibleCount());
+        assertFalse(UndoHistory.redo(realm, AUTHOR));
+    }
+
+    @Test
+    public void historyKeepsTheLastOperationsOnly() {
+        addStrokes(AUTHOR, UndoHistory.MAX_OPERATIONS * 10);
+
+        assertEquals(UndoHistory.MAX_OPERATIONS, realm.where(StrokeOperation.class).count());
+        for (int i = 0; i < UndoHistory.MAX_OPERATIONS; i++) {
+            assertTrue(UndoHistory.undo(realm, AUTHOR));
+        }
+        assertFalse(UndoHistory.undo(realm, AUTHOR));
+    }
+
+    @Test
+    public void undoTakesAsLongOnALargeCanvas() {
+        addStrokes(AUTHOR, SMALL_CANVAS);
+        // Warms up, so both measurements run the same compiled code.
+        undoAndRedo();
+        final long small = undoAndRedo();
+
+        addStrokes(OTHER_AUTHOR, LARGE_CANVAS - SMALL_CANVAS);
+        final long large = undoAndRedo();
+
+        // Scanning the strokes or the history would make the large canvas a thousand times slower.
+        assertTrue("Undo took " + small + " ns with " + SMALL_CANVAS + " strokes and " + large + " ns with "
+                + LARGE_CANVAS, large < small * 10);
+    }
+
+    private void addStrokes(String author, int count) {
+        final long generation = CanvasState.currentGeneration(realm);
+        final long start = realm.where(DrawPath.class).count();
+        for (int i = 0; i < count; i++) {
+            final String id = author + (start + i);
+            final DrawPath path = realm.createObject(DrawPath.class);
+            path.setId(id);
+            path.setGeneration(generation);
+            path.setCompleted(true);
+            UndoHistory.recordStroke(realm, author, id, generation);
+        }
+    }
+
+    private long visibleCount() {
+        return CanvasState.visiblePaths(realm, CanvasState.currentGeneration(realm)).count();
+    }
+
+    // Nanoseconds taken by undoing and redoing the last stroke of the author repeatedly.
+    private long undoAndRedo() {
+        final long start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            assertTrue(UndoHistory.undo(realm, AUTHOR));
+            assertTrue(UndoHistory.redo(realm, AUTHOR));
+        }
+        return System.nanoTime() - start;
+    }
+}
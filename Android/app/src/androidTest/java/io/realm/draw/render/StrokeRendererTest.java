@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.realm.OrderedCollectionChangeSet;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.RealmResults;
+import io.realm.draw.models.CanvasModule;
+import io.realm.draw.models.CanvasState;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.DrawPoint;
+import io.realm.draw.models.Palette;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class StrokeRendererTest {
+    private static final int SIZE = 512;
+    private static final int MAX_FRAMES = 100;
+    private static final int BELOW = 4;
+    private static final int ABOVE = 11;
+    private static final int STROKES = 100;
+    private static final int POINTS_PER_STROKE = 50;
+    private static final int FRAMES = 200;
+    private static final int MAX_ALLOCATIONS_PER_POINT = 16;
+
+    private static final class ChangeSet implements OrderedCollectionChangeSet {
+        private final int[] deletions;
+        private final int[] insertions;
+
+        ChangeSet(int[] deletions, int[] insertions) {
+            this.deletions = deletions;
+            this.insertions = insertions;
+        }
+
+        @Override
+        public int[] getDeletions() {
+            return deletions;
+        }
+
+        @Override
+        public int[] getInsertions() {
+            return insertions;
+        }
+
+        @Override
+        public int[] getChanges() {
+            return new int[0];
+        }
+
+        @Override
+        public Range[] getDeletionRanges() {
+            return new Range[0];
+        }
+
+        @Override
+        public Range[] getInsertionRanges() {
+            return new Range[0];
+        }
+
+        @Override
+        public Range[] getChangeRanges() {
+            return new Range[0];
+        }
+    }
+
+    private Realm realm;
+    private RealmResults<DrawPath> results;
+    private StrokeRenderer renderer;
+    private Bitmap surface;
+    private Canvas canvas;
+    private Object allocated;
+
+    @Before
+    public void setUp() {
+        Realm.init(InstrumentationRegistry.getTargetContext());
+        final RealmConfiguration configuration = new RealmConfiguration.Builder()
+                .name("stroke-renderer-test.realm")
+                .inMemory()
+                .modules(new CanvasModule())
+                .build();
+        realm = Realm.getInstance(configuration);
+        results = CanvasState.visiblePaths(realm, CanvasState.FIRST_GENERATION).findAll();
+        renderer = new StrokeRenderer(
+                new StrokeGeometryCache(StrokeGeometryCache.DEFAULT_MAX_POINTS, StrokeGeometryCache.DEFAULT_MIN_SEGMENT_LENGTH),
+                new TileCache(16 * 1024 * 1024, null, 0), SIZE);
+        renderer.setTransform(1, 0, 0);
+        surface = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(surface);
+    }
+
+    @After
+    public void tearDown() {
+        renderer.release();
+        surface.recycle();
+        realm.close();
+    }
+
+    @Test
+    public void redoneStrokeStaysBelowLaterStrokes() {
+        final DrawPath below = addStroke(BELOW, 100, 300, 400, 300);
+        addStroke(ABOVE, 300, 100, 300, 400);
+        renderer.onChange(results, null);
+        renderAll();
+        assertEquals(Palette.colorOf(ABOVE), surface.getPixel(300, 300));
+
+        final int position = results.indexOf(below);
+        setGeneration(below, -CanvasState.FIRST_GENERATION);
+        renderer.onChange(results, new ChangeSet(new int[] {position}, new int[0]));
+        renderAll();
+        assertEquals(Color.WHITE, surface.getPixel(200, 300));
+
+        setGeneration(below, CanvasState.FIRST_GENERATION);
+        renderer.onChange(results, new ChangeSet(new int[0], new int[] {results.indexOf(below)}));
+        renderAll();
+        assertEquals(Palette.colorOf(BELOW), surface.getPixel(200, 300));
+        assertEquals(Palette.colorOf(ABOVE), surface.getPixel(300, 300));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void renderingCachedAndGrowingStrokesAllocatesOnlyForNewPoints() {
+        for (int i = 0; i < STROKES; i++) {
+            addStroke(Palette.DEFAULT_ID, walk(i));
+        }
+        final DrawPath open = addStroke(ABOVE, false, 10, 10);
+        renderer.onChange(results, null);
+        renderAll();
+
+        Debug.startAllocCounting();
+        try {
+            if (!countsAllocations()) {
+                return;
+            }
+            // Warms up, so the cache and the code are in their steady state.
+            render(open, false);
+            render(open, true);
+
+            final int cached = render(open, false);
+            assertEquals("Allocated " + cached + " objects in " + FRAMES + " frames", 0, cached);
+            // Reading a new point out of Realm creates its object, but the points read before are
+            // not read again.
+            final int growing = render(open, true);
+            assertTrue("Allocated " + growing + " objects in " + FRAMES + " frames",
+                    growing < FRAMES * MAX_ALLOCATIONS_PER_POINT);
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    // Objects allocated while rendering frames, after adding a point to the open stroke if
+    // {@code grow}.
+    @SuppressWarnings("deprecation")
+    private int render(DrawPath open, boolean grow) {
+        int allocations = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (grow) {
+                realm.beginTransaction();
+                final DrawPoint point = realm.createObject(DrawPoint.class);
+                point.setX(10 + open.getPoints().size() % SIZE);
+                point.setY(20);
+                open.getPoints().add(point);
+                realm.commitTransaction();
+            }
+            final int start = Debug.getThreadAllocCount();
+            renderer.render(canvas, results);
+            allocations += Debug.getThreadAllocCount() - start;
+        }
+        return allocations;
+    }
+
+    // Some runtimes do not count allocations at all.
+    @SuppressWarnings("deprecation")
+    private boolean countsAllocations() {
+        final int start = Debug.getThreadAllocCount();
+        allocated = new int[1];
+        return Debug.getThreadAllocCount() != start;
+    }
+
+    private static float[] walk(int seed) {
+        final float[] points = new float[POINTS_PER_STROKE * 2];
+        for (int i = 0; i < POINTS_PER_STROKE; i++) {
+            points[i * 2] = (seed * 3 + i * 2.5f) % SIZE;
+            points[i * 2 + 1] = (seed * 5 + (i % 7) * 4f) % SIZE;
+        }
+        return points;
+    }
+
+    private DrawPath addStroke(int colorId, float... points) {
+        return addStroke(colorId, true, points);
+    }
+
+    private DrawPath addStroke(int colorId, boolean completed, float... points) {
+        realm.beginTransaction();
+        final DrawPath path = realm.createObject(DrawPath.class);
+        path.setGeneration(CanvasState.FIRST_GENERATION);
+        path.setColorId(colorId);
+        path.setColor(Palette.nameOf(colorId));
+        for (int i = 0; i < points.length; i += 2) {
+            final DrawPoint point = realm.createObject(DrawPoint.class);
+            point.setX(points[i]);
+            point.setY(points[i + 1]);
+            path.getPoints().add(point);
+        }
+        path.setCompleted(completed);
+        realm.commitTransaction();
+        return path;
+    }
+
+    private void setGeneration(DrawPath path, long generation) {
+        realm.beginTransaction();
+        path.setGeneration(generation);
+        realm.commitTransaction();
+    }
+
+    private void renderAll() {
+        for (int frame = 0; frame < MAX_FRAMES; frame++) {
+            renderer.render(canvas, results);
+            if (!renderer.hasPendingWork()) {
+                return;
+            }
+        }
+        assertFalse("Still rendering after " + MAX_FRAMES + " frames", renderer.hasPendingWork());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import io.realm.draw.canvas.CanvasSession;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class TileCacheTest {
+    private static final long TILE_FILE_BYTES = 20 + TileCache.TILE_SIZE * TileCache.TILE_SIZE * 4;
+
+    private File directory;
+    private TileCache cache;
+
+    @Before
+    public void setUp() {
+        directory = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "tile-cache-test");
+        CanvasSession.deleteCache(directory);
+        // One tile in memory, two on disk.
+        cache = new TileCache(TileCache.TILE_SIZE * TileCache.TILE_SIZE * 4, directory, 2 * TILE_FILE_BYTES);
+        cache.setScale(1);
+    }
+
+    @After
+    public void tearDown() {
+        cache.deleteAll();
+        CanvasSession.deleteCache(directory);
+    }
+
+    @Test
+    public void diskTierDeletesTheLeastRecentlyUsedTiles() {
+        for (int column = 0; column < 4; column++) {
+            put(column);
+        }
+        cache.flush();
+
+        assertEquals(2, directory.list().length);
+        assertNull(cache.get(0, 0, 1));
+        assertNull(cache.get(1, 0, 2));
+        assertNotNull(cache.get(2, 0, 3));
+        assertNotNull(cache.get(3, 0, 4));
+    }
+
+    @Test
+    public void diskTierKeepsTilesReadAgain() {
+        for (int column = 0; column < 3; column++) {
+            put(column);
+        }
+        // Reads the first tile back from disk, so the second one is used least recently.
+        assertNotNull(cache.get(0, 0, 1));
+        cache.flush();
+
+        assertEquals(2, directory.list().length);
+        assertNull(cache.get(1, 0, 2));
+        assertNotNull(cache.get(2, 0, 3));
+    }
+
+    @Test
+    public void deleteAllDeletesTheTilesOnDisk() {
+        put(0);
+        put(1);
+        cache.flush();
+
+        cache.deleteAll();
+
+        assertEquals(0, directory.list().length);
+        assertNull(cache.get(0, 0, 1));
+        assertNull(cache.get(1, 0, 2));
+    }
+
+    // Puts the tile in row 0 of the column, with the column plus one as its version.
+    private void put(int column) {
+        final Bitmap bitmap = cache.obtain();
+        bitmap.eraseColor(0xff000000 | column);
+        cache.put(column, 0, column + 1, bitmap);
+    }
+}
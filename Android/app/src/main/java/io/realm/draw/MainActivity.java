@@ -17,65 +17,192 @@
 package io.realm.draw;
 
 import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import io.realm.ErrorCode;
 import io.realm.ObjectServerError;
+import io.realm.OrderedCollectionChangeSet;
+import io.realm.OrderedRealmCollectionChangeListener;
+import io.realm.Progress;
+import io.realm.ProgressListener;
+import io.realm.ProgressMode;
 import io.realm.Realm;
-import io.realm.RealmList;
+import io.realm.RealmAsyncTask;
+import io.realm.RealmChangeListener;
+import io.realm.RealmConfiguration;
 import io.realm.RealmResults;
 import io.realm.SyncConfiguration;
 import io.realm.SyncCredentials;
+import io.realm.SyncSession;
 import io.realm.SyncUser;
+import io.realm.draw.canvas.CanvasSession;
+import io.realm.draw.canvas.CanvasSessions;
+import io.realm.draw.export.StrokeArchive;
+import io.realm.draw.export.StrokeSource;
+import io.realm.draw.export.SvgExporter;
+import io.realm.draw.ingest.MultiFingerTap;
+import io.realm.draw.ingest.StrokeIngestor;
+import io.realm.draw.ingest.TouchSampler;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.CanvasIndexModule;
+import io.realm.draw.models.CanvasInfo;
+import io.realm.draw.models.CanvasModule;
+import io.realm.draw.models.CanvasState;
 import io.realm.draw.models.DrawPath;
-import io.realm.draw.models.DrawPoint;
-import io.realm.draw.sensor.ShakeSensorEventListener;
-
-
-public class MainActivity extends AppCompatActivity implements SurfaceHolder.Callback, View.OnClickListener {
+import io.realm.draw.models.Palette;
+import io.realm.draw.models.PointStorage;
+import io.realm.draw.models.RealmStrokeSource;
+import io.realm.draw.render.CanvasSnapshot;
+import io.realm.draw.render.MetricsOverlay;
+import io.realm.draw.render.RenderScheduler;
+import io.realm.draw.render.StartupCoordinator;
+import io.realm.draw.render.StrokeGeometryCache;
+import io.realm.draw.render.StrokeRenderer;
+import io.realm.draw.sensor.ShakeDetector;
+import io.realm.draw.simulation.LoadProfile;
+import io.realm.draw.simulation.LoadSimulator;
+
+
+public class MainActivity extends AppCompatActivity implements SurfaceHolder.Callback, View.OnClickListener,
+        View.OnLongClickListener {
     private static final String REALM_URL = "realm://" + BuildConfig.OBJECT_SERVER_IP + ":9080/~/Draw";
+    private static final String INDEX_URL = "realm://" + BuildConfig.OBJECT_SERVER_IP + ":9080/~/DrawCanvases";
     private static final String AUTH_URL = "http://" + BuildConfig.OBJECT_SERVER_IP + ":9080/auth";
     private static final String ID = "demo@realm.io";
     private static final String PASSWORD = "password";
     private static final int EDGE_WIDTH = 683;
-    private volatile Realm realm;
+    private static final String SIMULATION_REALM = "simulation.realm";
+    private static final String EXTRA_CANVAS = "canvas";
+    private static final String EXTRA_STORAGE = "storage";
+    private static final String PREFERENCES = "draw";
+    private static final String PREFERENCE_CANVAS = "canvas";
+    private static final String PREFERENCE_AUTHOR = "author";
+    private static final String EXTRA_SIMULATE_PARTICIPANTS = "simulate.participants";
+    private static final String EXTRA_SIMULATE_STROKES_PER_MINUTE = "simulate.strokesPerMinute";
+    private static final String EXTRA_SIMULATE_POINTS_PER_STROKE = "simulate.pointsPerStroke";
+    private static final String EXTRA_SIMULATE_POINTS_PER_SECOND = "simulate.pointsPerSecond";
+    private static final String EXTRA_SIMULATE_SECONDS = "simulate.seconds";
+    private static final String EXPORT_ARCHIVE = "canvas.strokes";
+    private static final String EXPORT_SVG = "canvas.svg";
+    private static final int EXPORT_SVG_SIZE = 2048;
+    private static final int EXPORT_BATCH_SIZE = 256;
+    private static final int MAX_FPS = RenderScheduler.DEFAULT_MAX_FPS;
+    // Tiles of one canvas kept on disk, enough for a few zoom levels of a large screen.
+    private static final long MAX_TILE_DISK_BYTES = 32L * 1024 * 1024;
+    // The iOS and Xamarin clients only read DrawPoint objects, so strokes are stored as those.
+    private static final PointStorage DEFAULT_POINT_STORAGE = PointStorage.LEGACY;
     private SurfaceView surfaceView;
-    private double ratio = -1;
-    private double marginLeft;
-    private double marginTop;
+    private float refreshRate;
+    private SharedPreferences preferences;
+    // Identifies this installation in the undo history of every canvas.
+    private String author;
+    private long maxTileBytes;
+    private PointStorage pointStorage = DEFAULT_POINT_STORAGE;
+    // Bytes uploaded by the sync session of the current canvas since it was shown.
+    private volatile long uploadedBytes;
+    // The canvas shown or about to be shown, and its open session once there is one.
+    private volatile String canvasId;
+    private volatile CanvasSession currentCanvas;
+    private CanvasSessions canvasSessions;
+    private RealmAsyncTask pendingOpen;
+    private volatile SyncConfiguration indexConfiguration;
+    private Realm indexRealm;
+    private volatile double ratio = -1;
+    private volatile double marginLeft;
+    private volatile double marginTop;
+    private final StartupCoordinator startupCoordinator = new StartupCoordinator();
+    // Exports run here, since dump is called on the main thread.
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+    private volatile String exportStatus = "none";
     private DrawThread drawThread;
-    private String currentColor = "Charcoal";
-    private DrawPath currentPath;
+    // The thread shut down with the last surface, which the next draw thread waits for.
+    private DrawThread stoppedDrawThread;
+    private int currentColorId = Palette.DEFAULT_ID;
+    private LoadSimulator loadSimulator;
+    private final TouchSampler touchSampler = new TouchSampler();
+    private final MultiFingerTap multiFingerTap = new MultiFingerTap(MultiFingerTap.DEFAULT_TIMEOUT_NANOS,
+            MultiFingerTap.DEFAULT_SLOP);
+    private final DrawMetrics metrics = new DrawMetrics();
+    private volatile boolean showMetrics;
+    private final ProgressListener uploadListener = new ProgressListener() {
+        @Override
+        public void onChange(Progress progress) {
+            uploadedBytes = progress.getTransferredBytes();
+            if (progress.isTransferComplete()) {
+                metrics.onUploadComplete(System.nanoTime());
+            }
+        }
+    };
     private PencilView currentPencil;
-    private HashMap<String, Integer> nameToColorMap = new HashMap<>();
-    private HashMap<Integer, String> colorIdToName = new HashMap<>();
+    private HashMap<Integer, Integer> buttonToColorId = new HashMap<>();
 
-    private SensorManager sensorManager;
-    private Sensor accelerometerSensor;
-    private ShakeSensorEventListener shakeSensorEventListener;
+    private ShakeDetector shakeDetector;
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+        // Tiles outlive the draw thread, so a recreated surface reuses them. Only the shown canvas
+        // keeps tiles in memory.
+        maxTileBytes = Runtime.getRuntime().maxMemory() / 8;
+        preferences = getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        author = preferences.getString(PREFERENCE_AUTHOR, null);
+        if (author == null) {
+            author = UUID.randomUUID().toString();
+            preferences.edit().putString(PREFERENCE_AUTHOR, author).apply();
+        }
+        // Another storage can be chosen to compare their size, for example with
+        // "--es storage PACKED", on canvases that only this app draws on.
+        final String requestedStorage = getIntent().getStringExtra(EXTRA_STORAGE);
+        if (requestedStorage != null) {
+            try {
+                pointStorage = PointStorage.valueOf(requestedStorage);
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(getApplicationContext(), "Invalid storage: " + requestedStorage, Toast.LENGTH_LONG).show();
+            }
+        }
+        final String requestedCanvas = getIntent().getStringExtra(EXTRA_CANVAS);
+        canvasId = CanvasInfo.isValidId(requestedCanvas)
+                ? requestedCanvas : preferences.getString(PREFERENCE_CANVAS, CanvasInfo.DEFAULT_ID);
 
-        createUserIfNeededAndAndLogin();
+        if (getIntent().hasExtra(EXTRA_SIMULATE_PARTICIPANTS)) {
+            startSimulation(getIntent());
+        } else {
+            createUserIfNeededAndAndLogin();
+        }
 
         surfaceView = findViewById(R.id.surface_view);
         surfaceView.getHolder().addCallback(MainActivity.this);
@@ -86,15 +213,22 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
     }
 
     private void createUserIfNeededAndAndLogin() {
+        // The user logged in by an earlier launch is persisted. Opening its Realm right away lets
+        // drawing start from the local file while sync connects in the background.
+        final SyncUser cachedUser = SyncUser.currentUser();
+        if (cachedUser != null && cachedUser.isValid()
+                && AUTH_URL.equals(cachedUser.getAuthenticationUrl().toString())) {
+            openSyncedRealm(cachedUser);
+            return;
+        }
+
         final SyncCredentials syncCredentials = SyncCredentials.usernamePassword(ID, PASSWORD, false);
 
         // Assume user exist already first time. If that fails, create it.
         SyncUser.loginAsync(syncCredentials, AUTH_URL, new SyncUser.Callback<SyncUser>() {
             @Override
             public void onSuccess(SyncUser user) {
-                final SyncConfiguration syncConfiguration = new SyncConfiguration.Builder(user, REALM_URL).build();
-                Realm.setDefaultConfiguration(syncConfiguration);
-                realm = Realm.getDefaultInstance();
+                openSyncedRealm(user);
             }
 
             @Override
@@ -110,27 +244,197 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         });
     }
 
+    private void openSyncedRealm(final SyncUser user) {
+        indexConfiguration = new SyncConfiguration.Builder(user, INDEX_URL)
+                .modules(new CanvasIndexModule())
+                .build();
+        indexRealm = Realm.getInstance(indexConfiguration);
+        startCanvases(new CanvasSessions.Opener() {
+            @Override
+            public RealmConfiguration configurationOf(String canvasId) {
+                // Every canvas is a Realm of its own. The default canvas keeps the URL of the
+                // single shared canvas that came before.
+                final String url = CanvasInfo.DEFAULT_ID.equals(canvasId) ? REALM_URL : REALM_URL + "-" + canvasId;
+                return new SyncConfiguration.Builder(user, url)
+                        .modules(new CanvasModule())
+                        // Reclaims the space of strokes deleted by HistoryCompaction. This happens
+                        // when the canvas is first opened, which CanvasSessions.openAsync does in
+                        // the background.
+                        .compactOnLaunch()
+                        .build();
+            }
+
+            @Override
+            public CanvasSession open(String canvasId) {
+                return openCanvas(canvasId, configurationOf(canvasId));
+            }
+        });
+    }
+
+    /**
+     * Draws on a local Realm to which a {@link LoadSimulator} adds the strokes of simulated
+     * collaborators, as configured by the intent extras, for example:
+     * {@code adb shell am start -n io.realm.draw/.MainActivity --ei simulate.participants 24}.
+     */
+    private void startSimulation(Intent intent) {
+        final LoadProfile defaults = LoadProfile.DEFAULT;
+        final LoadProfile profile = new LoadProfile(
+                intent.getIntExtra(EXTRA_SIMULATE_PARTICIPANTS, defaults.getParticipants()),
+                intent.getIntExtra(EXTRA_SIMULATE_STROKES_PER_MINUTE, defaults.getStrokesPerMinute()),
+                intent.getIntExtra(EXTRA_SIMULATE_POINTS_PER_STROKE, defaults.getPointsPerStroke()),
+                intent.getIntExtra(EXTRA_SIMULATE_POINTS_PER_SECOND, defaults.getPointsPerSecond()),
+                TimeUnit.SECONDS.toMillis(intent.getIntExtra(EXTRA_SIMULATE_SECONDS, 0)));
+        // Simulated collaborators draw on the canvas shown first.
+        final RealmConfiguration configuration = simulationConfiguration(canvasId);
+        // Every run starts from an empty canvas. The Realm cannot be deleted while it is open, for
+        // example by an activity that is being replaced, so the strokes of the last run are kept.
+        if (Realm.getGlobalInstanceCount(configuration) == 0) {
+            Realm.deleteRealm(configuration);
+            CanvasSession.deleteCache(cacheDirectoryOf(canvasId));
+        } else {
+            Log.w("MainActivity", "Simulation canvas is still open, not clearing it");
+        }
+        startCanvases(new CanvasSessions.Opener() {
+            @Override
+            public RealmConfiguration configurationOf(String canvasId) {
+                return simulationConfiguration(canvasId);
+            }
+
+            @Override
+            public CanvasSession open(String canvasId) {
+                return openCanvas(canvasId, configurationOf(canvasId));
+            }
+        });
+        loadSimulator = new LoadSimulator(configuration, profile, pointStorage, metrics, EDGE_WIDTH);
+        loadSimulator.start();
+    }
+
+    private static RealmConfiguration simulationConfiguration(String canvasId) {
+        return new RealmConfiguration.Builder()
+                .name(CanvasInfo.DEFAULT_ID.equals(canvasId) ? SIMULATION_REALM : "simulation-" + canvasId + ".realm")
+                .modules(new CanvasModule())
+                .build();
+    }
+
+    private void startCanvases(CanvasSessions.Opener opener) {
+        canvasSessions = new CanvasSessions(opener, CanvasSessions.DEFAULT_MAX_OPEN);
+        showCanvas(canvasId);
+    }
+
+    private CanvasSession openCanvas(String canvasId, RealmConfiguration configuration) {
+        return new CanvasSession(canvasId, configuration, pointStorage, metrics, cacheDirectoryOf(canvasId),
+                maxTileBytes, MAX_TILE_DISK_BYTES, author);
+    }
+
+    private File cacheDirectoryOf(String canvasId) {
+        return new File(new File(getCacheDir(), "canvases"), canvasId);
+    }
+
+    /**
+     * Shows the canvas {@code canvasId}, which is created if it does not exist yet, for example
+     * with {@code adb shell am start -n io.realm.draw/.MainActivity --es canvas sketches}.
+     */
+    private void selectCanvas(String canvasId) {
+        if (!CanvasInfo.isValidId(canvasId)) {
+            Toast.makeText(getApplicationContext(), "Invalid canvas name: " + canvasId, Toast.LENGTH_LONG).show();
+            return;
+        }
+        this.canvasId = canvasId;
+        if (canvasSessions != null) {
+            showCanvas(canvasId);
+        }
+    }
+
+    private void showCanvas(final String canvasId) {
+        if (!canvasSessions.isOpen(canvasId)) {
+            if (pendingOpen != null) {
+                pendingOpen.cancel();
+            }
+            pendingOpen = canvasSessions.openAsync(canvasId, new CanvasSessions.OpenCallback() {
+                @Override
+                public void onOpen() {
+                    pendingOpen = null;
+                    // Shown unless another canvas was selected meanwhile.
+                    if (canvasId.equals(MainActivity.this.canvasId)) {
+                        showCanvas(canvasId);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable exception) {
+                    pendingOpen = null;
+                    // The canvas shown before stays on screen.
+                    Toast.makeText(getApplicationContext(), "Failed to open canvas " + canvasId + ": "
+                            + exception.getMessage(), Toast.LENGTH_LONG).show();
+                }
+            });
+            return;
+        }
+        final CanvasSession previous = currentCanvas;
+        if (previous != null) {
+            if (previous.getId().equals(canvasId)) {
+                return;
+            }
+            previous.getStrokeIngestor().endStrokes();
+            final SyncSession previousSession = previous.getSyncSession();
+            if (previousSession != null) {
+                previousSession.removeProgressListener(uploadListener);
+            }
+        }
+        final CanvasSession next = canvasSessions.get(canvasId);
+        currentCanvas = next;
+        startupCoordinator.onRealmReady();
+        final SyncSession syncSession = next.getSyncSession();
+        if (syncSession != null) {
+            uploadedBytes = 0;
+            syncSession.addUploadProgressListener(ProgressMode.INDEFINITELY, uploadListener);
+        }
+        preferences.edit().putString(PREFERENCE_CANVAS, canvasId).apply();
+        if (indexRealm != null) {
+            final String openedId = canvasId;
+            final long now = System.currentTimeMillis();
+            indexRealm.executeTransactionAsync(new Realm.Transaction() {
+                @Override
+                public void execute(Realm realm) {
+                    CanvasInfo.opened(realm, openedId, now);
+                }
+            });
+        }
+        if (drawThread != null && !drawThread.canvasId.equals(canvasId)) {
+            // The next draw thread takes over once this one has saved the canvas it leaves.
+            final DrawThread previousThread = drawThread;
+            previousThread.shutdown();
+            drawThread = new DrawThread(previousThread);
+            drawThread.start();
+        }
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        if (intent.hasExtra(EXTRA_CANVAS)) {
+            selectCanvas(intent.getStringExtra(EXTRA_CANVAS));
+        }
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        sensorManager.registerListener(shakeSensorEventListener, accelerometerSensor, SensorManager.SENSOR_DELAY_UI);
+        shakeDetector.start();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        sensorManager.unregisterListener(shakeSensorEventListener);
+        shakeDetector.stop();
     }
 
     private void initializeShakeSensor() {
-
-        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        shakeSensorEventListener = new ShakeSensorEventListener();
-        shakeSensorEventListener.setOnShakeListener(new ShakeSensorEventListener.OnShakeListener() {
-
+        final SensorManager sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        shakeDetector = new ShakeDetector(sensorManager, new ShakeDetector.OnShakeListener() {
             @Override
-            public void onShake(int count) {
+            public void onShake() {
                 wipeCanvas();
             }
         });
@@ -154,6 +458,7 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         for (int id : buttonIds) {
             View view = findViewById(id);
             view.setOnClickListener(this);
+            view.setOnLongClickListener(this);
         }
 
         currentPencil = findViewById(R.id.charcoal);
@@ -161,38 +466,24 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
     }
 
     private void generateColorMap() {
-        nameToColorMap.put("Charcoal", 0xff1c283f);
-        nameToColorMap.put("Elephant", 0xff9a9ba5);
-        nameToColorMap.put("Dove", 0xffebebf2);
-        nameToColorMap.put("Ultramarine", 0xff39477f);
-        nameToColorMap.put("Indigo", 0xff59569e);
-        nameToColorMap.put("GrapeJelly", 0xff9a50a5);
-        nameToColorMap.put("Mulberry", 0xffd34ca3);
-        nameToColorMap.put("Flamingo", 0xfffe5192);
-        nameToColorMap.put("SexySalmon", 0xfff77c88);
-        nameToColorMap.put("Peach", 0xfffc9f95);
-        nameToColorMap.put("Melon", 0xfffcc397);
-        colorIdToName.put(R.id.charcoal, "Charcoal");
-        colorIdToName.put(R.id.elephant, "Elephant");
-        colorIdToName.put(R.id.dove, "Dove");
-        colorIdToName.put(R.id.ultramarine, "Ultramarine");
-        colorIdToName.put(R.id.indigo, "Indigo");
-        colorIdToName.put(R.id.grape_jelly, "GrapeJelly");
-        colorIdToName.put(R.id.mulberry, "Mulberry");
-        colorIdToName.put(R.id.flamingo, "Flamingo");
-        colorIdToName.put(R.id.sexy_salmon, "SexySalmon");
-        colorIdToName.put(R.id.peach, "Peach");
-        colorIdToName.put(R.id.melon, "Melon");
+        buttonToColorId.put(R.id.charcoal, Palette.idOf("Charcoal"));
+        buttonToColorId.put(R.id.elephant, Palette.idOf("Elephant"));
+        buttonToColorId.put(R.id.dove, Palette.idOf("Dove"));
+        buttonToColorId.put(R.id.ultramarine, Palette.idOf("Ultramarine"));
+        buttonToColorId.put(R.id.indigo, Palette.idOf("Indigo"));
+        buttonToColorId.put(R.id.grape_jelly, Palette.idOf("GrapeJelly"));
+        buttonToColorId.put(R.id.mulberry, Palette.idOf("Mulberry"));
+        buttonToColorId.put(R.id.flamingo, Palette.idOf("Flamingo"));
+        buttonToColorId.put(R.id.sexy_salmon, Palette.idOf("SexySalmon"));
+        buttonToColorId.put(R.id.peach, Palette.idOf("Peach"));
+        buttonToColorId.put(R.id.melon, Palette.idOf("Melon"));
     }
 
     private void wipeCanvas() {
-        if(realm != null) {
-            realm.executeTransactionAsync(new Realm.Transaction() {
-                @Override
-                public void execute(Realm r) {
-                    r.deleteAll();
-                }
-            });
+        final CanvasSession canvas = currentCanvas;
+        if (canvas != null) {
+            canvas.getStrokeIngestor().discardStrokes();
+            canvas.getStrokeWriter().wipe();
         }
     }
 
@@ -200,72 +491,133 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (realm != null) {
-            realm.close();
-            realm = null;
+        shakeDetector.close();
+        if (loadSimulator != null) {
+            loadSimulator.close();
+            loadSimulator = null;
+        }
+        final CanvasSession canvas = currentCanvas;
+        if (canvas != null && canvas.getSyncSession() != null) {
+            canvas.getSyncSession().removeProgressListener(uploadListener);
         }
+        currentCanvas = null;
+        if (pendingOpen != null) {
+            pendingOpen.cancel();
+            pendingOpen = null;
+        }
+        if (canvasSessions != null) {
+            canvasSessions.close();
+            canvasSessions = null;
+        }
+        if (indexRealm != null) {
+            indexRealm.close();
+            indexRealm = null;
+        }
+        // An export that is running is finished, it reads its own Realm.
+        exportExecutor.shutdown();
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
 
-        if(realm == null) {
-            return false; // if we are in the middle of a rotation, realm may be null.
+        final CanvasSession canvas = currentCanvas;
+        if(canvas == null || !touchSampler.hasTransform()) {
+            return false; // the canvas may not be open yet, or we are in the middle of a rotation.
+        }
+        final StrokeIngestor strokeIngestor = canvas.getStrokeIngestor();
+
+        final long start = System.nanoTime();
+        final int action = event.getActionMasked();
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                // Every finger draws its own stroke.
+                final int index = event.getActionIndex();
+                final int pointerId = event.getPointerId(index);
+                touchSampler.read(event, index);
+                final float[] points = touchSampler.getPoints();
+                multiFingerTap.onDown(pointerId, points[0], points[1], touchSampler.getEventTimeNanos());
+                endDeferredStrokes(strokeIngestor);
+                strokeIngestor.beginStroke(pointerId, currentColorId, points[0], points[1],
+                        touchSampler.getEventTimeNanos());
+                startupCoordinator.onFirstStroke();
+                break;
+            }
+            case MotionEvent.ACTION_MOVE:
+                // Move events carry the samples of all pointers that are down.
+                for (int index = 0; index < event.getPointerCount(); index++) {
+                    final int pointerId = event.getPointerId(index);
+                    if (strokeIngestor.isDrawing(pointerId)) {
+                        final int count = touchSampler.read(event, index);
+                        final float[] points = touchSampler.getPoints();
+                        if (count > 0) {
+                            multiFingerTap.onMove(pointerId, points[count * 2 - 2], points[count * 2 - 1],
+                                    touchSampler.getEventTimeNanos());
+                        }
+                        strokeIngestor.addPoints(pointerId, points, count, touchSampler.getEventTimeNanos());
+                    }
+                }
+                endDeferredStrokes(strokeIngestor);
+                break;
+            case MotionEvent.ACTION_POINTER_UP: {
+                final int index = event.getActionIndex();
+                final int pointerId = event.getPointerId(index);
+                final int count = touchSampler.read(event, index);
+                strokeIngestor.addPoints(pointerId, touchSampler.getPoints(), count, touchSampler.getEventTimeNanos());
+                // The stroke may be the finger of a tap, so it is only completed once it is not.
+                if (!multiFingerTap.onPointerUp(pointerId, touchSampler.getEventTimeNanos())) {
+                    strokeIngestor.endStroke(pointerId);
+                }
+                endDeferredStrokes(strokeIngestor);
+                break;
+            }
+            case MotionEvent.ACTION_UP: {
+                final int index = event.getActionIndex();
+                final int pointerId = event.getPointerId(index);
+                final int count = touchSampler.read(event, index);
+                strokeIngestor.addPoints(pointerId, touchSampler.getPoints(), count, touchSampler.getEventTimeNanos());
+                final int tapFingers = multiFingerTap.onUp(touchSampler.getEventTimeNanos());
+                if (tapFingers == 0) {
+                    endDeferredStrokes(strokeIngestor);
+                    strokeIngestor.endStroke(pointerId);
+                } else {
+                    // A tap with two fingers undoes the last stroke, with more it redoes it.
+                    strokeIngestor.discardStrokes();
+                    multiFingerTap.takeDeferredPointers();
+                    if (tapFingers == 2) {
+                        canvas.getStrokeWriter().undo();
+                    } else {
+                        canvas.getStrokeWriter().redo();
+                    }
+                }
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL:
+                multiFingerTap.cancel();
+                multiFingerTap.takeDeferredPointers();
+                strokeIngestor.endStrokes();
+                return true;
+            default:
+                return false;
         }
+        metrics.inputHandling.record(DrawMetrics.toMicros(System.nanoTime() - start));
+        return true;
+    }
 
-        int[] viewLocation = new int[2];
-        surfaceView.getLocationInWindow(viewLocation);
-        int action = event.getAction();
-        if (action == MotionEvent.ACTION_DOWN
-                || action == MotionEvent.ACTION_MOVE
-                || action == MotionEvent.ACTION_UP
-                || action == MotionEvent.ACTION_CANCEL) {
-            float x = event.getRawX();
-            float y = event.getRawY();
-            double pointX = (x - marginLeft - viewLocation[0]) * ratio;
-            double pointY = (y - marginTop - viewLocation[1]) * ratio;
-
-            if (action == MotionEvent.ACTION_DOWN) {
-                realm.beginTransaction();
-                currentPath = realm.createObject(DrawPath.class);
-                currentPath.setColor(currentColor);
-                DrawPoint point = realm.createObject(DrawPoint.class);
-                point.setX(pointX);
-                point.setY(pointY);
-                currentPath.getPoints().add(point);
-                realm.commitTransaction();
-            } else if (action == MotionEvent.ACTION_MOVE) {
-                realm.beginTransaction();
-                DrawPoint point = realm.createObject(DrawPoint.class);
-                point.setX(pointX);
-                point.setY(pointY);
-                currentPath.getPoints().add(point);
-                realm.commitTransaction();
-            } else if (action == MotionEvent.ACTION_UP) {
-                realm.beginTransaction();
-                currentPath.setCompleted(true);
-                DrawPoint point = realm.createObject(DrawPoint.class);
-                point.setX(pointX);
-                point.setY(pointY);
-                currentPath.getPoints().add(point);
-                realm.commitTransaction();
-                currentPath = null;
-            } else {
-                realm.beginTransaction();
-                currentPath.setCompleted(true);
-                realm.commitTransaction();
-                currentPath = null;
-            }
-            return true;
-
-        }
-        return false;
+    private void endDeferredStrokes(StrokeIngestor strokeIngestor) {
+        int pointers = multiFingerTap.takeDeferredPointers();
+        while (pointers != 0) {
+            final int pointerId = Integer.numberOfTrailingZeros(pointers);
+            pointers &= pointers - 1;
+            strokeIngestor.endStroke(pointerId);
+        }
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder surfaceHolder) {
         if (drawThread == null) {
-            drawThread = new DrawThread();
+            drawThread = new DrawThread(stoppedDrawThread);
+            stoppedDrawThread = null;
             drawThread.start();
         }
     }
@@ -285,24 +637,34 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
             marginLeft = 0;
             marginTop = (height - width) / 2.0;
         }
+        int[] viewLocation = new int[2];
+        surfaceView.getLocationInWindow(viewLocation);
+        touchSampler.setTransform((float) (viewLocation[0] + marginLeft), (float) (viewLocation[1] + marginTop), (float) ratio);
+        startupCoordinator.onSurfaceReady();
+        if (drawThread != null) {
+            drawThread.requestRender();
+        }
     }
 
     @Override
     public void surfaceDestroyed(SurfaceHolder surfaceHolder) {
         if (drawThread != null) {
             drawThread.shutdown();
+            stoppedDrawThread = drawThread;
             drawThread = null;
         }
+        startupCoordinator.onSurfaceLost();
         ratio = -1;
+        touchSampler.clearTransform();
     }
 
     @Override
     public void onClick(View view) {
-        String colorName = colorIdToName.get(view.getId());
-        if (colorName == null) {
+        Integer colorId = buttonToColorId.get(view.getId());
+        if (colorId == null) {
             return;
         }
-        currentColor = colorName;
+        currentColorId = colorId;
         if (view instanceof PencilView) {
             currentPencil.setSelected(false);
             currentPencil.invalidate();
@@ -313,92 +675,338 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         }
     }
 
+    // A long press on any pencil toggles the metrics overlay.
+    @Override
+    public boolean onLongClick(View view) {
+        showMetrics = !showMetrics;
+        if (drawThread != null) {
+            drawThread.requestRender();
+        }
+        return true;
+    }
+
+    /**
+     * Prints the drawing metrics, as JSON if {@code --json} is passed:
+     * {@code adb shell dumpsys activity io.realm.draw/.MainActivity [--json]}. The text report also
+     * lists the canvases, with the size of the current canvas's Realm file and the bytes its sync
+     * session uploaded, and the result of the last export. With
+     * {@code --export}, the canvas is written to the app's external files directory in the
+     * background instead, as a stroke archive for the exporter and as SVG.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        final StringBuilder report = new StringBuilder();
+        if (args != null && Arrays.asList(args).contains("--export")) {
+            exportCanvas(prefix, writer);
+        } else if (args != null && Arrays.asList(args).contains("--json")) {
+            metrics.writeJson(report);
+            writer.println(report);
+        } else {
+            writer.print(prefix);
+            writer.println("Draw metrics (durations in us):");
+            metrics.writeText(report);
+            writer.print(report);
+            writer.print(prefix);
+            writer.println("Startup: Realm " + startupCoordinator.getTimeToRealm() + " ms, first frame "
+                    + startupCoordinator.getTimeToFirstFrame() + " ms, first stroke "
+                    + startupCoordinator.getTimeToFirstStroke() + " ms");
+            final DrawThread thread = drawThread;
+            if (thread != null) {
+                writer.print(prefix);
+                writer.println(thread.describeScheduler());
+            }
+            describeCanvases(prefix, writer);
+            writer.print(prefix);
+            writer.println("Last export: " + exportStatus);
+        }
+        writer.flush();
+    }
+
+    private void describeCanvases(String prefix, PrintWriter writer) {
+        final CanvasSessions sessions = canvasSessions;
+        writer.print(prefix);
+        writer.println("Canvas: " + canvasId + ", open: " + (sessions != null ? sessions.getOpenIds() : "none"));
+        final CanvasSession canvas = currentCanvas;
+        if (canvas != null) {
+            // Compares the size of the point storages, together with the storage extra.
+            writer.print(prefix);
+            writer.println("  Storage: " + pointStorage + ", Realm file " + new File(canvas.getConfiguration().getPath()).length()
+                    + " bytes, uploaded " + uploadedBytes + " bytes");
+        }
+        final SyncConfiguration configuration = indexConfiguration;
+        if (configuration == null) {
+            return;
+        }
+        final Realm index = Realm.getInstance(configuration);
+        try {
+            for (CanvasInfo info : CanvasInfo.recent(index)) {
+                writer.print(prefix);
+                writer.println("  " + info.getId() + " (" + info.getName() + "), last opened "
+                        + new Date(info.getLastOpened()));
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    private void exportCanvas(String prefix, PrintWriter writer) {
+        final CanvasSession canvas = currentCanvas;
+        final File directory = getExternalFilesDir(null);
+        writer.print(prefix);
+        if (canvas == null || directory == null) {
+            writer.println("Nothing to export");
+            return;
+        }
+        final StrokeSource source = new RealmStrokeSource(canvas.getConfiguration(), EDGE_WIDTH);
+        final File archive = new File(directory, EXPORT_ARCHIVE);
+        final File svg = new File(directory, EXPORT_SVG);
+        exportStatus = "running, " + canvas.getId();
+        exportExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                exportStatus = export(source, archive, svg);
+                Log.i("MainActivity", exportStatus);
+            }
+        });
+        writer.println("Exporting to " + archive + " and " + svg + ", dump again for the result");
+    }
+
+    private static String export(StrokeSource source, File archive, File svg) {
+        try {
+            final int strokes = StrokeArchive.write(source, archive, EXPORT_BATCH_SIZE);
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(svg), "UTF-8"));
+            try {
+                SvgExporter.write(source, EXPORT_SVG_SIZE, out, EXPORT_BATCH_SIZE);
+            } finally {
+                out.close();
+            }
+            return "Exported " + strokes + " strokes to " + archive + " and " + svg;
+        } catch (IOException e) {
+            Log.e("MainActivity", "Failed to export canvas", e);
+            return "Export failed: " + e;
+        }
+    }
+
     class DrawThread extends Thread {
+        final String canvasId = MainActivity.this.canvasId;
+        private DrawThread previous;
+        private CanvasSession session;
         private Realm bgRealm;
+        private Looper looper;
+        private Handler handler;
+        private RealmResults<DrawPath> results;
+        private RealmResults<CanvasState> canvasStates;
+        private long generation;
+        private StrokeRenderer renderer;
+        private volatile RenderScheduler scheduler;
+        private final MetricsOverlay metricsOverlay = new MetricsOverlay();
+        private long cpuTimeAtStart;
+        private boolean firstFrameDrawn;
+
+        private final OrderedRealmCollectionChangeListener<RealmResults<DrawPath>> pathsListener =
+                new OrderedRealmCollectionChangeListener<RealmResults<DrawPath>>() {
+                    @Override
+                    public void onChange(RealmResults<DrawPath> drawPaths, OrderedCollectionChangeSet changeSet) {
+                        metrics.onChangeDelivered(System.nanoTime());
+                        renderer.onChange(drawPaths, changeSet);
+                        scheduler.requestFrame();
+                    }
+                };
+
+        private final Runnable requestFrame = new Runnable() {
+            @Override
+            public void run() {
+                scheduler.requestFrame();
+            }
+        };
+
+        /**
+         * @param previous the thread that drew before this one, which is waited for so that the two
+         *                 never render or save a snapshot at the same time.
+         */
+        DrawThread(DrawThread previous) {
+            this.previous = previous;
+        }
 
         public void shutdown() {
+            interrupt();
             synchronized(this) {
-                if (bgRealm != null) {
-                    bgRealm.stopWaitForChange();
+                if (looper != null) {
+                    looper.quit();
                 }
             }
-            interrupt();
         }
 
-        @Override
-        public void run() {
-            while (ratio < 0 && !isInterrupted()) {
+        public void requestRender() {
+            synchronized(this) {
+                if (handler != null) {
+                    handler.removeCallbacks(requestFrame);
+                    handler.post(requestFrame);
+                }
             }
+        }
 
-            if (isInterrupted()) {
+        @Override
+        public void run() {
+            cpuTimeAtStart = SystemClock.currentThreadTimeMillis();
+            try {
+                if (previous != null) {
+                    previous.join();
+                    previous = null;
+                }
+                startupCoordinator.awaitSurface();
+            } catch (InterruptedException e) {
                 return;
             }
+            final File cacheDirectory = cacheDirectoryOf(canvasId);
 
+            // Show the canvas saved by the last session, if any, while the Realm is opened.
+            CanvasSnapshot snapshot = null;
             Canvas canvas = null;
-
             try {
                 final SurfaceHolder holder = surfaceView.getHolder();
                 canvas = holder.lockCanvas();
-                canvas.drawColor(Color.WHITE);
+                // The surface can be destroyed again before it is drawn, then it shows nothing.
+                if (canvas != null) {
+                    snapshot = CanvasSnapshot.load(cacheDirectory, canvas.getWidth(), canvas.getHeight(),
+                            ratio, marginLeft, marginTop);
+                    if (snapshot != null) {
+                        canvas.drawBitmap(snapshot.getBitmap(), 0, 0, null);
+                    } else {
+                        canvas.drawColor(Color.WHITE);
+                    }
+                }
             } finally {
                 if (canvas != null) {
                     surfaceView.getHolder().unlockCanvasAndPost(canvas);
                 }
             }
 
-            while (realm == null && !isInterrupted()) {
+            try {
+                startupCoordinator.awaitRealm();
+            } catch (InterruptedException e) {
+                if (snapshot != null) {
+                    snapshot.recycle();
+                }
+                return;
+            }
+            session = currentCanvas;
+            if (session == null || !session.getId().equals(canvasId)) {
+                // Another canvas was selected meanwhile, and another thread draws it.
+                if (snapshot != null) {
+                    snapshot.recycle();
+                }
+                return;
             }
 
+            // Change sets are only delivered to threads with a Looper, which has to exist before the Realm is opened.
+            Looper.prepare();
+            synchronized(this) {
+                looper = Looper.myLooper();
+                handler = new Handler(looper);
+            }
             if (isInterrupted()) {
                 return;
             }
 
-            bgRealm = Realm.getDefaultInstance();
-            final RealmResults<DrawPath> results = bgRealm.where(DrawPath.class).findAll();
+            scheduler = new RenderScheduler(new RenderScheduler.Callback() {
+                @Override
+                public void onFrame(long frameTimeNanos) {
+                    renderFrame();
+                }
+            }, refreshRate, MAX_FPS);
+            bgRealm = Realm.getInstance(session.getConfiguration());
+            renderer = new StrokeRenderer(
+                    new StrokeGeometryCache(StrokeGeometryCache.DEFAULT_MAX_POINTS, StrokeGeometryCache.DEFAULT_MIN_SEGMENT_LENGTH),
+                    session.getTileCache(), EDGE_WIDTH);
+            if (snapshot != null) {
+                renderer.restore(snapshot);
+            }
+            canvasStates = bgRealm.where(CanvasState.class).findAll();
+            canvasStates.addChangeListener(new RealmChangeListener<RealmResults<CanvasState>>() {
+                @Override
+                public void onChange(RealmResults<CanvasState> states) {
+                    final long current = CanvasState.currentGeneration(bgRealm);
+                    if (current != generation) {
+                        // The canvas was wiped, here or on another device, so no tile can be used again.
+                        session.getTileCache().deleteAll();
+                        showGeneration(current);
+                        renderer.onChange(results, null);
+                        scheduler.requestFrame();
+                    }
+                }
+            });
+            showGeneration(CanvasState.currentGeneration(bgRealm));
+            scheduler.requestFrame();
+
+            Looper.loop();
+
+            scheduler.stop();
+            Log.i("DrawThread", describeScheduler());
+            renderer.saveSnapshot(session.getCacheDirectory(), results);
+            results.removeAllChangeListeners();
+            canvasStates.removeAllChangeListeners();
+            renderer.release();
+            bgRealm.close();
+            if (currentCanvas != session) {
+                // A canvas that is not shown keeps its tiles on disk only.
+                session.getTileCache().clear();
+            }
+        }
+
+        private void showGeneration(long generation) {
+            if (results != null) {
+                results.removeChangeListener(pathsListener);
+            }
+            this.generation = generation;
+            results = CanvasState.visiblePaths(bgRealm, generation).findAll();
+            results.addChangeListener(pathsListener);
+        }
 
-            while (!isInterrupted()) {
-                try {
-                    final SurfaceHolder holder = surfaceView.getHolder();
-                    canvas = holder.lockCanvas();
+        String describeScheduler() {
+            final RenderScheduler scheduler = this.scheduler;
+            if (scheduler == null) {
+                return "No frames rendered";
+            }
+            return "Rendered " + scheduler.getFrameCount() + " frames, average "
+                    + scheduler.getAverageFrameDurationNanos() / 1000 + " us, max "
+                    + scheduler.getMaxFrameDurationNanos() / 1000 + " us, "
+                    + scheduler.getDroppedFrames() + " dropped, "
+                    + scheduler.getCoalescedRequests() + " requests coalesced";
+        }
 
-                    synchronized (holder) {
-                        canvas.drawColor(Color.WHITE);
-                        final Paint paint = new Paint();
-                        for (DrawPath drawPath : results) {
-                            final RealmList<DrawPoint> points = drawPath.getPoints();
-                            final Integer color = nameToColorMap.get(drawPath.getColor());
-                            if (color != null) {
-                                paint.setColor(color);
-                            } else {
-                                paint.setColor(nameToColorMap.get(currentColor));
-                            }
-                            paint.setStyle(Paint.Style.STROKE);
-                            paint.setStrokeWidth((float) (4 / ratio));
-                            final Iterator<DrawPoint> iterator = points.iterator();
-                            final DrawPoint firstPoint = iterator.next();
-                            final Path path = new Path();
-                            final float firstX = (float) ((firstPoint.getX() / ratio) + marginLeft);
-                            final float firstY = (float) ((firstPoint.getY() / ratio) + marginTop);
-                            path.moveTo(firstX, firstY);
-                            while(iterator.hasNext()) {
-                                DrawPoint point = iterator.next();
-                                final float x = (float) ((point.getX() / ratio) + marginLeft);
-                                final float y = (float) ((point.getY() / ratio) + marginTop);
-                                path.lineTo(x, y);
-                            }
-                            canvas.drawPath(path, paint);
-                        }
+        private void renderFrame() {
+            if (ratio < 0) {
+                return;
+            }
+            final SurfaceHolder holder = surfaceView.getHolder();
+            Canvas canvas = null;
+            try {
+                canvas = holder.lockCanvas();
+                if (canvas == null) {
+                    return;
+                }
+                synchronized (holder) {
+                    final long start = System.nanoTime();
+                    renderer.setTransform(ratio, marginLeft, marginTop);
+                    renderer.render(canvas, results);
+                    if (renderer.hasPendingWork()) {
+                        scheduler.requestFrame();
                     }
-                } finally {
-                    if (canvas != null) {
-                        surfaceView.getHolder().unlockCanvasAndPost(canvas);
+                    metrics.onFrame(start, System.nanoTime(), renderer.getLastFramePaths(), renderer.getLastFramePoints());
+                    if (showMetrics) {
+                        metricsOverlay.draw(canvas, metrics, scheduler, renderer);
                     }
                 }
-                bgRealm.waitForChange();
-            }
-
-            synchronized(this) {
-                bgRealm.close();
+                if (!firstFrameDrawn) {
+                    firstFrameDrawn = true;
+                    startupCoordinator.onFirstFrame(SystemClock.currentThreadTimeMillis() - cpuTimeAtStart);
+                }
+            } finally {
+                if (canvas != null) {
+                    holder.unlockCanvasAndPost(canvas);
+                }
             }
         }
     }
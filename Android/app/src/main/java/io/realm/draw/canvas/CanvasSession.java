@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.canvas;
+
+import java.io.File;
+
+import android.util.Log;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.SyncConfiguration;
+import io.realm.SyncManager;
+import io.realm.SyncSession;
+import io.realm.draw.geometry.StrokeSimplifier;
+import io.realm.draw.ingest.FlushPolicy;
+import io.realm.draw.ingest.StrokeIngestor;
+import io.realm.draw.ingest.StrokeWriter;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.ColorIdMigration;
+import io.realm.draw.models.HistoryCompaction;
+import io.realm.draw.models.PointStorage;
+import io.realm.draw.render.TileCache;
+
+/**
+ * An open canvas: its Realm, which keeps the sync session of a synchronized canvas running, the
+ * writer thread for its strokes, its background maintenance and its caches. Created and closed on
+ * the main thread.
+ */
+public class CanvasSession {
+    private static final String TAG = "CanvasSession";
+
+    private final String id;
+    private final RealmConfiguration configuration;
+    private final File cacheDirectory;
+    private final Realm realm;
+    private final StrokeWriter strokeWriter;
+    private final StrokeIngestor strokeIngestor;
+    private final TileCache tileCache;
+    private final ColorIdMigration colorIdMigration;
+    private final HistoryCompaction historyCompaction;
+
+    /**
+     * @param cacheDirectory directory of the snapshot and tiles of this canvas.
+     * @param maxTileBytes memory used by the tiles of this canvas while it is shown.
+     * @param maxTileDiskBytes disk space used by the tiles of this canvas.
+     * @param author identifies the undo history of the strokes drawn here.
+     */
+    public CanvasSession(String id, RealmConfiguration configuration, PointStorage pointStorage, DrawMetrics metrics,
+                         File cacheDirectory, long maxTileBytes, long maxTileDiskBytes, String author) {
+        this.id = id;
+        this.configuration = configuration;
+        this.cacheDirectory = cacheDirectory;
+        this.realm = Realm.getInstance(configuration);
+        this.strokeWriter = new StrokeWriter(configuration, pointStorage,
+                new StrokeSimplifier(StrokeSimplifier.DEFAULT_TOLERANCE), metrics, author);
+        strokeWriter.start();
+        this.strokeIngestor = new StrokeIngestor(strokeWriter, FlushPolicy.DEFAULT);
+        this.tileCache = new TileCache(maxTileBytes, new File(cacheDirectory, "tiles"), maxTileDiskBytes);
+        this.colorIdMigration = new ColorIdMigration(realm);
+        colorIdMigration.start();
+        this.historyCompaction = new HistoryCompaction(realm);
+        historyCompaction.start();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public RealmConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public StrokeWriter getStrokeWriter() {
+        return strokeWriter;
+    }
+
+    public StrokeIngestor getStrokeIngestor() {
+        return strokeIngestor;
+    }
+
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * The sync session of this canvas, or {@code null} for a local canvas.
+     */
+    public SyncSession getSyncSession() {
+        if (configuration instanceof SyncConfiguration) {
+            return SyncManager.getSession((SyncConfiguration) configuration);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the snapshot and the tiles in {@code cacheDirectory}, for a canvas whose Realm was
+     * deleted. Must not be called while the canvas is open.
+     */
+    public static void deleteCache(File cacheDirectory) {
+        final File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteCache(file);
+            }
+        }
+        if (!cacheDirectory.delete() && cacheDirectory.exists()) {
+            Log.w(TAG, "Failed to delete " + cacheDirectory);
+        }
+    }
+
+    /**
+     * Commits the strokes drawn so far and closes the canvas. Once no other thread has it open,
+     * its sync session stops after uploading local changes.
+     */
+    public void close() {
+        colorIdMigration.cancel();
+        historyCompaction.cancel();
+        strokeIngestor.close();
+        strokeWriter.close();
+        tileCache.flush();
+        realm.close();
+    }
+}
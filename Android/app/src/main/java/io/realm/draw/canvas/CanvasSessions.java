@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.canvas;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.util.Log;
+
+import io.realm.Realm;
+import io.realm.RealmAsyncTask;
+import io.realm.RealmConfiguration;
+
+/**
+ * The canvases shown recently, kept open up to a limit so that switching back to one of them
+ * shows it right away, without waiting for its Realm or sync session. When the limit is exceeded
+ * the canvas shown least recently is closed, which also ends its sync session. Canvases are
+ * opened and closed on the main thread.
+ */
+public class CanvasSessions {
+    public static final int DEFAULT_MAX_OPEN = 3;
+    private static final String TAG = "CanvasSessions";
+
+    public interface Opener {
+        RealmConfiguration configurationOf(String canvasId);
+
+        CanvasSession open(String canvasId);
+    }
+
+    public interface OpenCallback {
+        void onOpen();
+
+        void onError(Throwable exception);
+    }
+
+    private final Map<String, CanvasSession> sessions = new LinkedHashMap<>(8, 0.75f, true);
+    private final Opener opener;
+    private final int maxOpen;
+
+    /**
+     * @param maxOpen number of canvases kept open, at least 2 so the canvas that is left stays
+     *                open while the next one is shown.
+     */
+    public CanvasSessions(Opener opener, int maxOpen) {
+        if (maxOpen < 2) {
+            throw new IllegalArgumentException("maxOpen must be at least 2: " + maxOpen);
+        }
+        this.opener = opener;
+        this.maxOpen = maxOpen;
+    }
+
+    /**
+     * Returns the canvas {@code canvasId}, opening it if it is not open yet, and marks it as the
+     * most recently used.
+     */
+    public synchronized CanvasSession get(String canvasId) {
+        CanvasSession session = sessions.get(canvasId);
+        if (session != null) {
+            return session;
+        }
+        session = opener.open(canvasId);
+        sessions.put(canvasId, session);
+        final Iterator<Map.Entry<String, CanvasSession>> iterator = sessions.entrySet().iterator();
+        while (sessions.size() > maxOpen && iterator.hasNext()) {
+            final CanvasSession eldest = iterator.next().getValue();
+            iterator.remove();
+            eldest.close();
+        }
+        return session;
+    }
+
+    public synchronized boolean isOpen(String canvasId) {
+        return sessions.containsKey(canvasId);
+    }
+
+    /**
+     * Opens the canvas {@code canvasId} like {@link #get}, but first opens its Realm on a
+     * background thread, where compacting the file or migrating it does not block the main
+     * thread. Must be called on a thread with a Looper, on which {@code callback} is told once
+     * {@link #get} returns the canvas right away, or why the Realm could not be opened.
+     */
+    public RealmAsyncTask openAsync(final String canvasId, final OpenCallback callback) {
+        return Realm.getInstanceAsync(opener.configurationOf(canvasId), new Realm.Callback() {
+            @Override
+            public void onSuccess(Realm realm) {
+                // The canvas is opened while this instance keeps the Realm open.
+                get(canvasId);
+                realm.close();
+                callback.onOpen();
+            }
+
+            @Override
+            public void onError(Throwable exception) {
+                Log.e(TAG, "Failed to open canvas " + canvasId, exception);
+                callback.onError(exception);
+            }
+        });
+    }
+
+    /**
+     * Ids of the open canvases, the least recently used first.
+     */
+    public synchronized List<String> getOpenIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    public synchronized void close() {
+        for (CanvasSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.codec;
+
+/**
+ * Packs canvas coordinates into byte arrays. Every point is stored as two little-endian 16 bit
+ * integers holding {@code x * SCALE} and {@code y * SCALE}, so a point takes 4 bytes and encoded
+ * blocks can be joined by plain concatenation.
+ * <p>
+ * With a scale of 16 the round trip error is at most 1/32 of a canvas unit and coordinates
+ * between -2048 and 2047 can be represented, three times the width of the canvas. Values outside
+ * that range are clamped.
+ */
+public final class PointCodec {
+    public static final int BYTES_PER_POINT = 4;
+    public static final float SCALE = 16f;
+    public static final float MAX_ERROR = 0.5f / SCALE;
+
+    private PointCodec() {
+    }
+
+    public static int pointCount(byte[] data) {
+        return data == null ? 0 : data.length / BYTES_PER_POINT;
+    }
+
+    /**
+     * Encodes {@code count} interleaved x/y points of {@code points}, starting at point index
+     * {@code offset}.
+     */
+    public static byte[] encode(float[] points, int offset, int count) {
+        final byte[] data = new byte[count * BYTES_PER_POINT];
+        encode(points, offset, count, data, 0);
+        return data;
+    }
+
+    public static void encode(float[] points, int offset, int count, byte[] destination, int destinationOffset) {
+        int out = destinationOffset;
+        for (int i = offset * 2; i < (offset + count) * 2; i++) {
+            final short value = quantize(points[i]);
+            destination[out++] = (byte) value;
+            destination[out++] = (byte) (value >> 8);
+        }
+    }
+
+    /**
+     * Decodes all points of {@code data} into {@code destination} as interleaved x/y pairs,
+     * starting at point index {@code offset}.
+     *
+     * @return the number of points decoded.
+     */
+    public static int decode(byte[] data, float[] destination, int offset) {
+        return decode(data, 0, pointCount(data), destination, offset);
+    }
+
+    /**
+     * Decodes {@code count} points of {@code data}, starting with point {@code first}, into
+     * {@code destination} as interleaved x/y pairs, starting at point index {@code offset}.
+     *
+     * @return the number of points decoded.
+     */
+    public static int decode(byte[] data, int first, int count, float[] destination, int offset) {
+        int in = first * BYTES_PER_POINT;
+        for (int i = offset * 2; i < (offset + count) * 2; i++) {
+            final int value = (data[in] & 0xff) | (data[in + 1] << 8);
+            destination[i] = value / SCALE;
+            in += 2;
+        }
+        return count;
+    }
+
+    static short quantize(float value) {
+        final float scaled = value * SCALE;
+        if (scaled >= Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (scaled <= Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) Math.round(scaled);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import io.realm.draw.codec.PointCodec;
+
+/**
+ * A file of strokes, so a canvas stored in Realm can be exported on any JVM. Strokes are stored
+ * in drawing order with their ARGB color and their points in the packed format of
+ * {@link PointCodec}.
+ */
+public final class StrokeArchive implements StrokeSource {
+    private static final int MAGIC = 0x5354524b;
+    private static final int VERSION = 1;
+    private static final int END = -1;
+
+    private final File file;
+    private final float canvasSize;
+
+    private StrokeArchive(File file, float canvasSize) {
+        this.file = file;
+        this.canvasSize = canvasSize;
+    }
+
+    /**
+     * Opens the archive in {@code file}.
+     */
+    public static StrokeArchive open(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            return new StrokeArchive(file, readHeader(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes all strokes of {@code source} to {@code file}.
+     *
+     * @return the number of strokes written.
+     */
+    public static int write(StrokeSource source, File file, int batchSize) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            return write(source, out, batchSize);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes all strokes of {@code source} to {@code out}, reading {@code batchSize} strokes at a
+     * time.
+     *
+     * @return the number of strokes written.
+     */
+    public static int write(StrokeSource source, OutputStream out, int batchSize) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeFloat(source.getCanvasSize());
+
+        final StrokeBatch batch = new StrokeBatch(batchSize);
+        byte[] packed = new byte[0];
+        int written = 0;
+        final StrokeReader reader = source.open();
+        try {
+            while (reader.read(batch) > 0) {
+                for (int i = 0; i < batch.size(); i++) {
+                    final int count = batch.getPointCount(i);
+                    if (packed.length < count * PointCodec.BYTES_PER_POINT) {
+                        packed = new byte[count * PointCodec.BYTES_PER_POINT];
+                    }
+                    PointCodec.encode(batch.getPoints(), batch.getStart(i), count, packed, 0);
+                    data.writeInt(count);
+                    data.writeInt(batch.getColor(i));
+                    data.write(packed, 0, count * PointCodec.BYTES_PER_POINT);
+                    written++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        data.writeInt(END);
+        data.flush();
+        return written;
+    }
+
+    @Override
+    public float getCanvasSize() {
+        return canvasSize;
+    }
+
+    @Override
+    public StrokeReader open() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            readHeader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new StrokeReader() {
+            private byte[] packed = new byte[0];
+            private float[] points = new float[0];
+            private boolean ended;
+
+            @Override
+            public int read(StrokeBatch batch) throws IOException {
+                batch.clear();
+                while (!ended && !batch.isFull()) {
+                    final int count = in.readInt();
+                    if (count == END) {
+                        ended = true;
+                        break;
+                    }
+                    final int color = in.readInt();
+                    if (packed.length < count * PointCodec.BYTES_PER_POINT) {
+                        packed = new byte[count * PointCodec.BYTES_PER_POINT];
+                        points = new float[count * 2];
+                    }
+                    in.readFully(packed, 0, count * PointCodec.BYTES_PER_POINT);
+                    PointCodec.decode(packed, 0, count, points, 0);
+                    batch.add(color, points, count);
+                }
+                return batch.size();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    private static float readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a stroke archive");
+        }
+        return in.readFloat();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.util.Arrays;
+
+import io.realm.draw.geometry.Bounds;
+
+/**
+ * A chunk of strokes read from a {@link StrokeReader}: for each stroke its color and points in
+ * canvas coordinates. Batches are reused between reads, so exporting a canvas only holds one
+ * batch of strokes in memory at a time.
+ */
+public final class StrokeBatch {
+    private final int capacity;
+    private final int[] colors;
+    private final int[] starts;
+    private final int[] counts;
+    private final float[] bounds;
+    private final Bounds strokeBounds = new Bounds();
+    private float[] points = new float[1024];
+    private int size;
+    private int pointCount;
+
+    /**
+     * @param capacity number of strokes in a full batch.
+     */
+    public StrokeBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.colors = new int[capacity];
+        this.starts = new int[capacity];
+        this.counts = new int[capacity];
+        this.bounds = new float[capacity * 4];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        size = 0;
+        pointCount = 0;
+    }
+
+    /**
+     * Adds a stroke of {@code count} interleaved x/y points of {@code strokePoints}.
+     *
+     * @param color ARGB color of the stroke.
+     */
+    public void add(int color, float[] strokePoints, int count) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        if (points.length < (pointCount + count) * 2) {
+            points = Arrays.copyOf(points, Math.max(points.length * 2, (pointCount + count) * 2));
+        }
+        System.arraycopy(strokePoints, 0, points, pointCount * 2, count * 2);
+        strokeBounds.setEmpty();
+        strokeBounds.union(strokePoints, count);
+        colors[size] = color;
+        starts[size] = pointCount;
+        counts[size] = count;
+        bounds[size * 4] = strokeBounds.left;
+        bounds[size * 4 + 1] = strokeBounds.top;
+        bounds[size * 4 + 2] = strokeBounds.right;
+        bounds[size * 4 + 3] = strokeBounds.bottom;
+        pointCount += count;
+        size++;
+    }
+
+    public int getColor(int stroke) {
+        return colors[stroke];
+    }
+
+    public int getPointCount(int stroke) {
+        return counts[stroke];
+    }
+
+    /**
+     * Index of the first point of {@code stroke} in {@link #getPoints()}.
+     */
+    public int getStart(int stroke) {
+        return starts[stroke];
+    }
+
+    /**
+     * Interleaved x/y points of all strokes. The array is reused by later reads.
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    public void getBounds(int stroke, Bounds out) {
+        out.set(bounds[stroke * 4], bounds[stroke * 4 + 1], bounds[stroke * 4 + 2], bounds[stroke * 4 + 3]);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the strokes of a {@link StrokeSource} in drawing order, one {@link StrokeBatch} at a time.
+ */
+public interface StrokeReader extends Closeable {
+    /**
+     * Clears {@code batch} and fills it with the next strokes.
+     *
+     * @return the number of strokes read, 0 once all strokes were read.
+     */
+    int read(StrokeBatch batch) throws IOException;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.IOException;
+
+/**
+ * Strokes of a canvas that can be read any number of times, for example once per band of an
+ * image that is too large to render at once.
+ */
+public interface StrokeSource {
+    /**
+     * Width and height of the canvas, in canvas units.
+     */
+    float getCanvasSize();
+
+    /**
+     * Starts reading the strokes from the beginning. Readers are used on the thread that opened
+     * them.
+     */
+    StrokeReader open() throws IOException;
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.StrokePathBuilder;
+import io.realm.draw.geometry.StrokeSmoother;
+
+/**
+ * Writes the strokes of a {@link StrokeSource} as SVG while they are read, so canvases of any
+ * size are exported with the memory of one {@link StrokeBatch}. Strokes are drawn with the same
+ * width and smoothing as on screen, scaled so the canvas fills an image of {@code size} pixels.
+ */
+public final class SvgExporter {
+    /** Width of a stroke, in canvas units. */
+    public static final float STROKE_WIDTH = 4;
+    /** Shortest segment written, in pixels. */
+    public static final float MIN_SEGMENT_LENGTH = 1;
+
+    private SvgExporter() {
+    }
+
+    /**
+     * @return the number of strokes written.
+     */
+    public static int write(StrokeSource source, int size, Writer out, int batchSize) throws IOException {
+        final double ratio = source.getCanvasSize() / size;
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + size + "\" height=\"" + size
+                + "\" viewBox=\"0 0 " + size + " " + size + "\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+        out.write("<g fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\" stroke-width=\""
+                + format((float) (STROKE_WIDTH / ratio)) + "\">\n");
+
+        final StrokeBatch batch = new StrokeBatch(batchSize);
+        final PathData pathData = new PathData(out);
+        int written = 0;
+        final StrokeReader reader = source.open();
+        try {
+            while (reader.read(batch) > 0) {
+                for (int i = 0; i < batch.size(); i++) {
+                    out.write("<path stroke=\"#");
+                    out.write(hex(batch.getColor(i)));
+                    out.write("\" d=\"");
+                    pathData.write(batch, i, ratio);
+                    out.write("\"/>\n");
+                    written++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        out.write("</g>\n</svg>\n");
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Whether a stroke with {@code bounds} in canvas units touches the pixel rectangle
+     * {@code left, top, right, bottom} of an image scaled by {@code ratio}.
+     */
+    static boolean touches(Bounds bounds, double ratio, float left, float top, float right, float bottom) {
+        final float halfWidth = STROKE_WIDTH / 2;
+        return (bounds.right + halfWidth) / ratio >= left && (bounds.left - halfWidth) / ratio <= right
+                && (bounds.bottom + halfWidth) / ratio >= top && (bounds.top - halfWidth) / ratio <= bottom;
+    }
+
+    private static String hex(int color) {
+        final String rgb = Integer.toHexString(color & 0xffffff);
+        return "000000".substring(rgb.length()) + rgb;
+    }
+
+    // Two decimals are well below a pixel.
+    private static String format(float value) {
+        final long hundredths = Math.round(value * 100.0);
+        final long whole = hundredths / 100;
+        final long fraction = Math.abs(hundredths % 100);
+        final String sign = hundredths < 0 && whole == 0 ? "-" : "";
+        if (fraction == 0) {
+            return sign + whole;
+        }
+        return sign + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static final class PathData implements StrokeSmoother.Sink {
+        private final Writer out;
+        private final StrokePathBuilder builder = new StrokePathBuilder(MIN_SEGMENT_LENGTH);
+        private IOException error;
+
+        PathData(Writer out) {
+            this.out = out;
+        }
+
+        void write(StrokeBatch batch, int stroke, double ratio) throws IOException {
+            builder.reset(ratio, 0, 0);
+            builder.add(batch.getPoints(), batch.getStart(stroke), batch.getPointCount(stroke), this);
+            builder.finish(this);
+            if (error != null) {
+                final IOException e = error;
+                error = null;
+                throw e;
+            }
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            append("M", x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            append("L", x, y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            append("Q", controlX, controlY);
+            append(" ", x, y);
+        }
+
+        private void append(String command, float x, float y) {
+            if (error != null) {
+                return;
+            }
+            try {
+                out.write(command);
+                out.write(format(x));
+                out.write(',');
+                out.write(format(y));
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+}
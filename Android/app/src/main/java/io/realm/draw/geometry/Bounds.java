@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+/**
+ * Mutable axis aligned rectangle in canvas coordinates. An empty rectangle has {@code left > right}.
+ */
+public class Bounds {
+    public float left;
+    public float top;
+    public float right;
+    public float bottom;
+
+    public Bounds() {
+        setEmpty();
+    }
+
+    public Bounds(float left, float top, float right, float bottom) {
+        set(left, top, right, bottom);
+    }
+
+    public void set(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(Bounds other) {
+        set(other.left, other.top, other.right, other.bottom);
+    }
+
+    public void setEmpty() {
+        left = Float.POSITIVE_INFINITY;
+        top = Float.POSITIVE_INFINITY;
+        right = Float.NEGATIVE_INFINITY;
+        bottom = Float.NEGATIVE_INFINITY;
+    }
+
+    public boolean isEmpty() {
+        return left > right || top > bottom;
+    }
+
+    public void union(float x, float y) {
+        if (x < left) {
+            left = x;
+        }
+        if (x > right) {
+            right = x;
+        }
+        if (y < top) {
+            top = y;
+        }
+        if (y > bottom) {
+            bottom = y;
+        }
+    }
+
+    public void union(Bounds other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        union(other.left, other.top);
+        union(other.right, other.bottom);
+    }
+
+    /**
+     * Grows {@code count} interleaved x/y points of {@code points} into these bounds.
+     */
+    public void union(float[] points, int count) {
+        for (int i = 0; i < count; i++) {
+            union(points[i * 2], points[i * 2 + 1]);
+        }
+    }
+
+    public void inset(float dx, float dy) {
+        left += dx;
+        top += dy;
+        right -= dx;
+        bottom -= dy;
+    }
+
+    public boolean intersects(Bounds other) {
+        return left <= other.right && other.left <= right && top <= other.bottom && other.top <= bottom;
+    }
+
+    public boolean contains(Bounds other) {
+        return left <= other.left && top <= other.top && right >= other.right && bottom >= other.bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "Bounds{" + left + ", " + top + ", " + right + ", " + bottom + "}";
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over a square canvas that finds the items whose bounds intersect a region without
+ * looking at every item. Items outside the grid are kept in the nearest edge cells, so queries
+ * stay correct for strokes that leave the canvas.
+ * <p>
+ * Query results are returned in the order of their sequence, which is the order strokes have to be
+ * painted in. Unless given, the sequence is the order the items were first added in.
+ */
+public class SpatialGrid<T> {
+
+    private static class Entry<T> {
+        final T item;
+        final long sequence;
+        final Bounds bounds = new Bounds();
+        int firstColumn;
+        int lastColumn;
+        int firstRow;
+        int lastRow;
+        int queryStamp;
+
+        Entry(T item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry<?>> BY_SEQUENCE = new Comparator<Entry<?>>() {
+        @Override
+        public int compare(Entry<?> first, Entry<?> second) {
+            return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+        }
+    };
+
+    private final float cellSize;
+    private final int cellsPerSide;
+    private final List<List<Entry<T>>> cells;
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+    private final List<Entry<T>> queryEntries = new ArrayList<>();
+    private long nextSequence;
+    private int queryStamp;
+
+    public SpatialGrid(float canvasSize, int cellsPerSide) {
+        this.cellsPerSide = cellsPerSide;
+        this.cellSize = canvasSize / cellsPerSide;
+        this.cells = new ArrayList<>(cellsPerSide * cellsPerSide);
+        for (int i = 0; i < cellsPerSide * cellsPerSide; i++) {
+            cells.add(new ArrayList<Entry<T>>());
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Adds {@code item} or moves it to its new bounds. Empty bounds remove the item.
+     */
+    public void put(T item, Bounds bounds) {
+        put(item, bounds, nextSequence);
+    }
+
+    /**
+     * Adds {@code item} with {@code sequence}, or moves it to its new bounds and keeps the
+     * sequence it was added with.
+     */
+    public void put(T item, Bounds bounds, long sequence) {
+        if (bounds.isEmpty()) {
+            remove(item);
+            return;
+        }
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item, sequence);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            entries.put(item, entry);
+        } else if (entry.bounds.contains(bounds)) {
+            // Bounds of a growing stroke often still fit; keeping the larger ones is conservative.
+            return;
+        } else {
+            unlink(entry);
+        }
+        entry.bounds.set(bounds);
+        entry.firstColumn = cell(bounds.left);
+        entry.lastColumn = cell(bounds.right);
+        entry.firstRow = cell(bounds.top);
+        entry.lastRow = cell(bounds.bottom);
+        for (int row = entry.firstRow; row <= entry.lastRow; row++) {
+            for (int column = entry.firstColumn; column <= entry.lastColumn; column++) {
+                cells.get(row * cellsPerSide + column).add(entry);
+            }
+        }
+    }
+
+    public void remove(T item) {
+        final Entry<T> entry = entries.remove(item);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < cells.size(); i++) {
+            cells.get(i).clear();
+        }
+        entries.clear();
+    }
+
+    /**
+     * Adds every item whose bounds intersect {@code region} to {@code result}, in sequence order.
+     */
+    public void query(Bounds region, List<T> result) {
+        if (region.isEmpty()) {
+            return;
+        }
+        queryStamp++;
+        queryEntries.clear();
+        final int lastRow = cell(region.bottom);
+        final int lastColumn = cell(region.right);
+        for (int row = cell(region.top); row <= lastRow; row++) {
+            for (int column = cell(region.left); column <= lastColumn; column++) {
+                final List<Entry<T>> cell = cells.get(row * cellsPerSide + column);
+                for (int i = 0; i < cell.size(); i++) {
+                    final Entry<T> entry = cell.get(i);
+                    if (entry.queryStamp != queryStamp && entry.bounds.intersects(region)) {
+                        entry.queryStamp = queryStamp;
+                        queryEntries.add(entry);
+                    }
+                }
+            }
+        }
+        Collections.sort(queryEntries, BY_SEQUENCE);
+        for (int i = 0; i < queryEntries.size(); i++) {
+            result.add(queryEntries.get(i).item);
+        }
+        queryEntries.clear();
+    }
+
+    private void unlink(Entry<T> entry) {
+        for (int row = entry.firstRow; row <= entry.lastRow; row++) {
+            for (int column = entry.firstColumn; column <= entry.lastColumn; column++) {
+                cells.get(row * cellsPerSide + column).remove(entry);
+            }
+        }
+    }
+
+    private int cell(float coordinate) {
+        final int cell = (int) Math.floor(coordinate / cellSize);
+        return Math.max(0, Math.min(cellsPerSide - 1, cell));
+    }
+}
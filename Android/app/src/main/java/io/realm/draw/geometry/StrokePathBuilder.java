@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+/**
+ * Builds the drawn curve of a stroke from its canvas points: projects them to output
+ * coordinates, skips points closer than {@code minSegmentLength} to the previous vertex, and
+ * joins the remaining vertices with a {@link StrokeSmoother}. The screen and the exporters all
+ * build strokes with it, so they draw them alike.
+ * <p>
+ * Points can be added in several batches while a stroke grows. A skipped point is kept until the
+ * stroke is finished, so the curve still ends at the last point.
+ */
+public final class StrokePathBuilder {
+    private final StrokeSmoother smoother = new StrokeSmoother();
+    private final float minSegmentLengthSquared;
+    private double ratio = 1;
+    private double offsetX;
+    private double offsetY;
+    private float lastX;
+    private float lastY;
+    // The last point, if it was too close to the last vertex to be added yet.
+    private float pendingX;
+    private float pendingY;
+    private boolean hasPending;
+
+    /**
+     * @param minSegmentLength shortest segment in output units that is drawn, or 0 to draw every
+     *                         point.
+     */
+    public StrokePathBuilder(float minSegmentLength) {
+        this.minSegmentLengthSquared = minSegmentLength * minSegmentLength;
+    }
+
+    /**
+     * Starts a new stroke, projected with {@code output = canvas / ratio + offset}.
+     */
+    public void reset(double ratio, double offsetX, double offsetY) {
+        this.ratio = ratio;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        smoother.reset();
+        hasPending = false;
+    }
+
+    public int getVertexCount() {
+        return smoother.getVertexCount();
+    }
+
+    /**
+     * Adds {@code count} interleaved x/y canvas points of {@code points}, starting at point index
+     * {@code first}.
+     */
+    public void add(float[] points, int first, int count, StrokeSmoother.Sink sink) {
+        for (int i = first; i < first + count; i++) {
+            final float x = (float) ((points[i * 2] / ratio) + offsetX);
+            final float y = (float) ((points[i * 2 + 1] / ratio) + offsetY);
+            final float dx = x - lastX;
+            final float dy = y - lastY;
+            if (smoother.getVertexCount() == 0 || dx * dx + dy * dy >= minSegmentLengthSquared) {
+                smoother.add(x, y, sink);
+                lastX = x;
+                lastY = y;
+                hasPending = false;
+            } else {
+                pendingX = x;
+                pendingY = y;
+                hasPending = true;
+            }
+        }
+    }
+
+    /**
+     * Ends the curve at the last point added.
+     */
+    public void finish(StrokeSmoother.Sink sink) {
+        if (hasPending) {
+            smoother.add(pendingX, pendingY, sink);
+            hasPending = false;
+        }
+        smoother.finish(sink);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+/**
+ * Removes points of a polyline with the Ramer-Douglas-Peucker algorithm. Every removed point lies
+ * within {@code tolerance} of the simplified polyline, and the first and last points are always
+ * kept. Instances are immutable and can be shared between threads.
+ */
+public class StrokeSimplifier {
+    /**
+     * A quarter of a canvas unit, which is below a pixel on current phones and tablets.
+     */
+    public static final float DEFAULT_TOLERANCE = 0.25f;
+
+    private final float tolerance;
+
+    public StrokeSimplifier(float tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("tolerance must not be negative: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Simplifies {@code count} interleaved x/y points of {@code points} in place.
+     *
+     * @return the number of points left at the start of {@code points}.
+     */
+    public int simplify(float[] points, int count) {
+        if (count < 3 || tolerance == 0) {
+            return count;
+        }
+        final float toleranceSquared = tolerance * tolerance;
+        final boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+
+        // Pairs of (first, last) indices of the spans still to be examined.
+        final int[] stack = new int[count * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            final int last = stack[--top];
+            final int first = stack[--top];
+            float maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                final float distance = segmentDistanceSquared(points, i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance > toleranceSquared) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                points[kept * 2] = points[i * 2];
+                points[kept * 2 + 1] = points[i * 2 + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Squared distance from point {@code index} to the segment between points {@code first} and
+     * {@code last}.
+     */
+    static float segmentDistanceSquared(float[] points, int index, int first, int last) {
+        final float x = points[index * 2];
+        final float y = points[index * 2 + 1];
+        final float x1 = points[first * 2];
+        final float y1 = points[first * 2 + 1];
+        final float dx = points[last * 2] - x1;
+        final float dy = points[last * 2 + 1] - y1;
+        final float lengthSquared = dx * dx + dy * dy;
+        float t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        }
+        final float px = x1 + t * dx - x;
+        final float py = y1 + t * dy - y;
+        return px * px + py * py;
+    }
+}
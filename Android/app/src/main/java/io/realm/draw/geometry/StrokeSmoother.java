@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+/**
+ * Turns the vertices of a stroke into a smooth curve as they arrive, using quadratic Bezier
+ * segments that run from the midpoint of one edge to the midpoint of the next, with the shared
+ * vertex as control point. Consecutive segments have the same tangent where they meet, so sparse
+ * points still draw a smooth stroke.
+ * <p>
+ * Every segment only depends on the two vertices before it, so segments that were emitted never
+ * change when more vertices are added. Only the half edge after the last midpoint is left out
+ * until {@link #finish(Sink)} is called.
+ */
+public final class StrokeSmoother {
+
+    /**
+     * Receives the segments of the curve, like an {@code android.graphics.Path}.
+     */
+    public interface Sink {
+        void moveTo(float x, float y);
+
+        void lineTo(float x, float y);
+
+        void quadTo(float controlX, float controlY, float x, float y);
+    }
+
+    private float lastX;
+    private float lastY;
+    private int vertexCount;
+    private boolean finished;
+
+    public void reset() {
+        vertexCount = 0;
+        finished = false;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public void add(float x, float y, Sink sink) {
+        if (finished) {
+            throw new IllegalStateException("Stroke was finished");
+        }
+        if (vertexCount == 0) {
+            sink.moveTo(x, y);
+        } else {
+            final float midX = (lastX + x) / 2;
+            final float midY = (lastY + y) / 2;
+            if (vertexCount == 1) {
+                sink.lineTo(midX, midY);
+            } else {
+                sink.quadTo(lastX, lastY, midX, midY);
+            }
+        }
+        lastX = x;
+        lastY = y;
+        vertexCount++;
+    }
+
+    /**
+     * Ends the curve at the last vertex. A stroke of a single vertex gets a segment of zero length,
+     * so it still draws a dot.
+     */
+    public void finish(Sink sink) {
+        if (finished || vertexCount == 0) {
+            return;
+        }
+        sink.lineTo(lastX, lastY);
+        finished = true;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+/**
+ * Decides when buffered stroke points are written to Realm: as soon as {@link #getMaxPoints()}
+ * points are pending, or {@link #getMaxDelayMillis()} after the first pending point, whichever
+ * comes first. Points are held back while more than {@link #getMaxQueuedPoints()} points are
+ * waiting for the writer.
+ */
+public class FlushPolicy {
+    public static final FlushPolicy DEFAULT = new FlushPolicy(32, 50, 4096);
+
+    private final int maxPoints;
+    private final long maxDelayMillis;
+    private final int maxQueuedPoints;
+
+    public FlushPolicy(int maxPoints, long maxDelayMillis, int maxQueuedPoints) {
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("maxPoints must be positive: " + maxPoints);
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must not be negative: " + maxDelayMillis);
+        }
+        if (maxQueuedPoints < 0) {
+            throw new IllegalArgumentException("maxQueuedPoints must not be negative: " + maxQueuedPoints);
+        }
+        this.maxPoints = maxPoints;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxQueuedPoints = maxQueuedPoints;
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public int getMaxQueuedPoints() {
+        return maxQueuedPoints;
+    }
+
+    public boolean shouldFlush(int pendingPoints) {
+        return pendingPoints >= maxPoints;
+    }
+
+    @Override
+    public String toString() {
+        return "FlushPolicy{maxPoints=" + maxPoints + ", maxDelayMillis=" + maxDelayMillis
+                + ", maxQueuedPoints=" + maxQueuedPoints + "}";
+    }
+}
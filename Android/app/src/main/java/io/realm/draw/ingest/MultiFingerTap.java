@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recognizes a short tap with several fingers among the touches that draw strokes. Must be used
+ * from the UI thread.
+ * <p>
+ * Fingers start strokes as soon as they touch, so drawing is not delayed. While the touch can
+ * still be a tap, the strokes of fingers that are lifted are left open, so they can be discarded
+ * if it turns out to be one.
+ */
+public class MultiFingerTap {
+    public static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    public static final float DEFAULT_SLOP = 8;
+
+    // Pointer ids are small, but only so many fit in a mask.
+    private static final int MAX_POINTER_ID = 31;
+
+    private final long timeoutNanos;
+    private final float slopSquared;
+    private final float[] startX = new float[MAX_POINTER_ID + 1];
+    private final float[] startY = new float[MAX_POINTER_ID + 1];
+    private long startNanos;
+    private int fingers;
+    private boolean candidate;
+    private boolean lifted;
+    // Pointers whose stroke was left open when they were lifted.
+    private int deferredPointers;
+
+    /**
+     * @param timeoutNanos longest time from the first finger down to the last finger up.
+     * @param slop distance in canvas units a finger may move during a tap.
+     */
+    public MultiFingerTap(long timeoutNanos, float slop) {
+        this.timeoutNanos = timeoutNanos;
+        this.slopSquared = slop * slop;
+    }
+
+    public void onDown(int pointerId, float x, float y, long eventNanos) {
+        if (fingers == 0) {
+            startNanos = eventNanos;
+            candidate = true;
+            lifted = false;
+            deferredPointers = 0;
+        }
+        fingers++;
+        // A finger that touches after another was lifted starts something else than a tap.
+        if (lifted || pointerId > MAX_POINTER_ID) {
+            candidate = false;
+            return;
+        }
+        startX[pointerId] = x;
+        startY[pointerId] = y;
+        checkTimeout(eventNanos);
+    }
+
+    public void onMove(int pointerId, float x, float y, long eventNanos) {
+        if (!candidate) {
+            return;
+        }
+        final float dx = x - startX[pointerId];
+        final float dy = y - startY[pointerId];
+        if (dx * dx + dy * dy > slopSquared) {
+            candidate = false;
+        }
+        checkTimeout(eventNanos);
+    }
+
+    /**
+     * Called when a finger is lifted while others stay down.
+     *
+     * @return whether the stroke of {@code pointerId} should be left open for now.
+     */
+    public boolean onPointerUp(int pointerId, long eventNanos) {
+        checkTimeout(eventNanos);
+        lifted = true;
+        if (!candidate) {
+            return false;
+        }
+        deferredPointers |= 1 << pointerId;
+        return true;
+    }
+
+    /**
+     * Called when the last finger is lifted.
+     *
+     * @return the number of fingers of the tap, or 0 if the touch was not a tap with several
+     * fingers.
+     */
+    public int onUp(long eventNanos) {
+        checkTimeout(eventNanos);
+        final int tapFingers = candidate && fingers > 1 ? fingers : 0;
+        fingers = 0;
+        candidate = false;
+        return tapFingers;
+    }
+
+    public void cancel() {
+        fingers = 0;
+        candidate = false;
+    }
+
+    /**
+     * Returns the pointers whose stroke was left open but has to be completed, since the touch is
+     * no tap after all, and forgets them.
+     */
+    public int takeDeferredPointers() {
+        if (candidate) {
+            return 0;
+        }
+        final int pointers = deferredPointers;
+        deferredPointers = 0;
+        return pointers;
+    }
+
+    private void checkTimeout(long eventNanos) {
+        if (eventNanos - startNanos > timeoutNanos) {
+            candidate = false;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+/**
+ * Fixed capacity ring buffer of (x, y) points backed by a single float array, so buffering a
+ * touch sample never allocates.
+ */
+public class PointRingBuffer {
+    private final float[] coordinates;
+    private final int capacity;
+    private int head;
+    private int size;
+
+    public PointRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.coordinates = new float[capacity * 2];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Appends a point to the tail of the buffer.
+     *
+     * @return {@code false} if the buffer is full and the point was not added.
+     */
+    public boolean add(float x, float y) {
+        if (size == capacity) {
+            return false;
+        }
+        int index = (head + size) % capacity;
+        coordinates[index * 2] = x;
+        coordinates[index * 2 + 1] = y;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes up to {@code maxPoints} points from the head of the buffer and copies them as
+     * interleaved x/y pairs into {@code destination}, starting at point index {@code offset}.
+     *
+     * @return the number of points copied.
+     */
+    public int drainTo(float[] destination, int offset, int maxPoints) {
+        int count = Math.min(size, maxPoints);
+        int firstRun = Math.min(count, capacity - head);
+        System.arraycopy(coordinates, head * 2, destination, offset * 2, firstRun * 2);
+        if (count > firstRun) {
+            System.arraycopy(coordinates, 0, destination, (offset + firstRun) * 2, (count - firstRun) * 2);
+        }
+        head = (head + count) % capacity;
+        size -= count;
+        return count;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
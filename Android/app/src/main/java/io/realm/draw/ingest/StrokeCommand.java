@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import java.util.Arrays;
+
+import io.realm.draw.models.Palette;
+
+/**
+ * A unit of work for the {@link StrokeWriter}.
+ */
+final class StrokeCommand {
+    enum Type {
+        /** Creates the path with its first points. */
+        BEGIN,
+        /** Appends points to an open path. */
+        APPEND,
+        /** Marks a path as completed. */
+        COMPLETE,
+        /** Deletes a path that is being drawn. */
+        CANCEL,
+        /** Clears the canvas by starting a new generation, which the strokes drawn so far are not part of. */
+        WIPE,
+        /** Undoes the last operation of the writer's author. */
+        UNDO,
+        /** Redoes the operation of the writer's author that was undone last. */
+        REDO
+    }
+
+    final Type type;
+    final String strokeId;
+    final int colorId;
+    float[] points;
+    int pointCount;
+    /** {@link System#nanoTime()} of the oldest touch sample in the command, or 0. */
+    long inputNanos;
+
+    private StrokeCommand(Type type, String strokeId, int colorId, int capacity) {
+        this.type = type;
+        this.strokeId = strokeId;
+        this.colorId = colorId;
+        this.points = new float[capacity * 2];
+    }
+
+    static StrokeCommand begin(String strokeId, int colorId, float x, float y, long inputNanos) {
+        final StrokeCommand command = new StrokeCommand(Type.BEGIN, strokeId, colorId, 1);
+        command.points[0] = x;
+        command.points[1] = y;
+        command.pointCount = 1;
+        command.inputNanos = inputNanos;
+        return command;
+    }
+
+    static StrokeCommand append(String strokeId, int colorId, int capacity) {
+        return new StrokeCommand(Type.APPEND, strokeId, colorId, capacity);
+    }
+
+    static StrokeCommand complete(String strokeId, int colorId) {
+        return new StrokeCommand(Type.COMPLETE, strokeId, colorId, 0);
+    }
+
+    static StrokeCommand cancel(String strokeId) {
+        return new StrokeCommand(Type.CANCEL, strokeId, Palette.NO_ID, 0);
+    }
+
+    static StrokeCommand wipe() {
+        return new StrokeCommand(Type.WIPE, null, Palette.NO_ID, 0);
+    }
+
+    static StrokeCommand undo() {
+        return new StrokeCommand(Type.UNDO, null, Palette.NO_ID, 0);
+    }
+
+    static StrokeCommand redo() {
+        return new StrokeCommand(Type.REDO, null, Palette.NO_ID, 0);
+    }
+
+    boolean canMerge(StrokeCommand next) {
+        return (type == Type.BEGIN || type == Type.APPEND)
+                && next.type == Type.APPEND
+                && strokeId.equals(next.strokeId);
+    }
+
+    void drainFrom(PointRingBuffer buffer) {
+        ensureCapacity(pointCount + buffer.size());
+        pointCount += buffer.drainTo(points, pointCount, buffer.size());
+    }
+
+    void append(StrokeCommand other) {
+        ensureCapacity(pointCount + other.pointCount);
+        System.arraycopy(other.points, 0, points, pointCount * 2, other.pointCount * 2);
+        pointCount += other.pointCount;
+        noteInput(other.inputNanos);
+    }
+
+    void noteInput(long nanos) {
+        if (nanos != 0 && (inputNanos == 0 || nanos < inputNanos)) {
+            inputNanos = nanos;
+        }
+    }
+
+    private void ensureCapacity(int requiredPoints) {
+        if (points.length < requiredPoints * 2) {
+            points = Arrays.copyOf(points, Math.max(points.length * 2, requiredPoints * 2));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import android.os.Handler;
+import android.util.SparseArray;
+
+import java.util.UUID;
+
+import io.realm.draw.models.Palette;
+
+/**
+ * Buffers the points of the strokes being drawn and hands them to a {@link StrokeWriter} in
+ * batches, as decided by a {@link FlushPolicy}. Must be used from the UI thread.
+ * <p>
+ * Every pointer draws its own stroke with its own buffer. The buffers of all strokes are flushed
+ * together, so the writer commits the points of simultaneous strokes in one transaction.
+ * <p>
+ * While the writer has more than {@link FlushPolicy#getMaxQueuedPoints()} points waiting, new
+ * points are coalesced here and submitted once it has caught up, or when the stroke ends.
+ * <p>
+ * Buffering touch samples does not allocate. Every flush allocates the command handed to the
+ * writer, so allocations grow with the number of batches rather than with touch events.
+ */
+public class StrokeIngestor {
+    private final StrokeWriter writer;
+    private final FlushPolicy flushPolicy;
+    private final Handler handler = new Handler();
+    // Strokes being drawn, by pointer id.
+    private final SparseArray<Stroke> strokes = new SparseArray<>();
+
+    private boolean flushScheduled;
+
+    private final Runnable scheduledFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    public StrokeIngestor(StrokeWriter writer, FlushPolicy flushPolicy) {
+        this.writer = writer;
+        this.flushPolicy = flushPolicy;
+    }
+
+    public boolean isDrawing() {
+        return strokes.size() > 0;
+    }
+
+    public boolean isDrawing(int pointerId) {
+        return strokes.get(pointerId) != null;
+    }
+
+    /**
+     * Starts a new stroke for the pointer {@code pointerId}. The path is created right away so
+     * other devices see it appear.
+     *
+     * @param colorId id of the stroke color in the {@link Palette}.
+     * @param inputNanos {@link System#nanoTime()} of the touch sample, or 0 if unknown.
+     */
+    public void beginStroke(int pointerId, int colorId, float x, float y, long inputNanos) {
+        endStroke(pointerId);
+        final Stroke stroke = new Stroke(UUID.randomUUID().toString(), colorId, flushPolicy.getMaxPoints());
+        strokes.put(pointerId, stroke);
+        writer.submit(StrokeCommand.begin(stroke.id, stroke.colorId, x, y, inputNanos));
+    }
+
+    public void addPoint(int pointerId, float x, float y, long inputNanos) {
+        final Stroke stroke = strokes.get(pointerId);
+        if (stroke == null) {
+            return;
+        }
+        bufferPoint(stroke, x, y, inputNanos);
+        scheduleFlush();
+    }
+
+    /**
+     * Adds {@code count} points stored as interleaved x/y pairs in {@code points} to the stroke
+     * of the pointer {@code pointerId}.
+     *
+     * @param inputNanos {@link System#nanoTime()} of the oldest of the points, or 0 if unknown.
+     */
+    public void addPoints(int pointerId, float[] points, int count, long inputNanos) {
+        final Stroke stroke = strokes.get(pointerId);
+        if (stroke == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            bufferPoint(stroke, points[i * 2], points[i * 2 + 1], inputNanos);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Marks the stroke of the pointer {@code pointerId} as completed and submits its remaining
+     * points.
+     */
+    public void endStroke(int pointerId) {
+        final Stroke stroke = strokes.get(pointerId);
+        if (stroke == null) {
+            return;
+        }
+        strokes.remove(pointerId);
+        holdBufferedPoints(stroke);
+        if (stroke.heldPoints != null) {
+            writer.submit(stroke.heldPoints);
+            stroke.heldPoints = null;
+        }
+        writer.submit(StrokeCommand.complete(stroke.id, stroke.colorId));
+        if (!isDrawing()) {
+            cancelScheduledFlush();
+        }
+    }
+
+    /**
+     * Completes the strokes of all pointers.
+     */
+    public void endStrokes() {
+        while (isDrawing()) {
+            endStroke(strokes.keyAt(0));
+        }
+    }
+
+    /**
+     * Removes the strokes of all pointers from the canvas.
+     */
+    public void discardStrokes() {
+        cancelScheduledFlush();
+        for (int i = 0; i < strokes.size(); i++) {
+            writer.submit(StrokeCommand.cancel(strokes.valueAt(i).id));
+        }
+        strokes.clear();
+    }
+
+    /**
+     * Completes any open stroke. The ingestor cannot be used afterwards.
+     */
+    public void close() {
+        endStrokes();
+        cancelScheduledFlush();
+    }
+
+    private void bufferPoint(Stroke stroke, float x, float y, long inputNanos) {
+        if (!stroke.buffer.add(x, y)) {
+            holdBufferedPoints(stroke);
+            stroke.buffer.add(x, y);
+        }
+        if (stroke.bufferedInputNanos == 0) {
+            stroke.bufferedInputNanos = inputNanos;
+        }
+        if (flushPolicy.shouldFlush(stroke.buffer.size())) {
+            flush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled && hasPendingPoints()) {
+            flushScheduled = true;
+            handler.postDelayed(scheduledFlush, flushPolicy.getMaxDelayMillis());
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (flushScheduled) {
+            handler.removeCallbacks(scheduledFlush);
+            flushScheduled = false;
+        }
+    }
+
+    private boolean hasPendingPoints() {
+        for (int i = 0; i < strokes.size(); i++) {
+            final Stroke stroke = strokes.valueAt(i);
+            if (!stroke.buffer.isEmpty() || stroke.heldPoints != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Submits the points of all strokes at once, so they end up in the same transaction.
+    private void flush() {
+        cancelScheduledFlush();
+        for (int i = 0; i < strokes.size(); i++) {
+            holdBufferedPoints(strokes.valueAt(i));
+        }
+        if (writer.getQueuedPoints() > flushPolicy.getMaxQueuedPoints()) {
+            scheduleFlush();
+            return;
+        }
+        for (int i = 0; i < strokes.size(); i++) {
+            final Stroke stroke = strokes.valueAt(i);
+            if (stroke.heldPoints != null) {
+                writer.submit(stroke.heldPoints);
+                stroke.heldPoints = null;
+            }
+        }
+    }
+
+    private void holdBufferedPoints(Stroke stroke) {
+        if (stroke.buffer.isEmpty()) {
+            return;
+        }
+        if (stroke.heldPoints == null) {
+            stroke.heldPoints = StrokeCommand.append(stroke.id, stroke.colorId, stroke.buffer.size());
+        }
+        stroke.heldPoints.drainFrom(stroke.buffer);
+        stroke.heldPoints.noteInput(stroke.bufferedInputNanos);
+        stroke.bufferedInputNanos = 0;
+    }
+
+    private static final class Stroke {
+        final String id;
+        final int colorId;
+        final PointRingBuffer buffer;
+        StrokeCommand heldPoints;
+        long bufferedInputNanos;
+
+        Stroke(String id, int colorId, int capacity) {
+            this.id = id;
+            this.colorId = colorId;
+            this.buffer = new PointRingBuffer(capacity);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.StrokeSimplifier;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.CanvasState;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.Palette;
+import io.realm.draw.models.PathPoints;
+import io.realm.draw.models.PointStorage;
+import io.realm.draw.models.UndoHistory;
+
+/**
+ * The only thread that writes drawing data. It owns its own Realm and applies the commands queued
+ * since its last commit in a single transaction, so the UI thread never waits for the write lock.
+ * <p>
+ * Commands are handed over through a lock free queue. When the writer falls behind, the commands
+ * that piled up are committed together and appends to the same stroke are merged, so the number
+ * of commits drops as the load grows, also with several strokes being drawn at once.
+ * <p>
+ * Completed strokes and wipes are recorded in the {@link UndoHistory} of the writer's author, in
+ * the same transaction, and undo and redo are applied in order with the strokes around them.
+ */
+public class StrokeWriter extends Thread {
+    private static final String TAG = "StrokeWriter";
+
+    private final RealmConfiguration configuration;
+    private final PointStorage pointStorage;
+    private final StrokeSimplifier simplifier;
+    private final DrawMetrics metrics;
+    private final String author;
+    private final ConcurrentLinkedQueue<StrokeCommand> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedPoints = new AtomicInteger();
+    private volatile boolean closed;
+
+    // Only accessed on the writer thread.
+    private final Map<String, DrawPath> openPaths = new HashMap<>();
+    private final List<StrokeCommand> commands = new ArrayList<>();
+    private final Bounds bounds = new Bounds();
+    private long generation;
+
+    /**
+     * @param simplifier simplifies completed strokes, or {@code null} to store all points. Only
+     *                   used with {@link PointStorage#PACKED}, since removing points that were
+     *                   already synchronized as {@code DrawPoint} objects would cost more than it
+     *                   saves.
+     * @param author identifies the undo history of the strokes written, usually one per
+     *               installation.
+     */
+    public StrokeWriter(RealmConfiguration configuration, PointStorage pointStorage, StrokeSimplifier simplifier,
+                        DrawMetrics metrics, String author) {
+        super(TAG);
+        this.configuration = configuration;
+        this.pointStorage = pointStorage;
+        this.simplifier = simplifier;
+        this.metrics = metrics;
+        this.author = author;
+    }
+
+    /**
+     * Number of points submitted but not committed yet.
+     */
+    public int getQueuedPoints() {
+        return queuedPoints.get();
+    }
+
+    public void wipe() {
+        submit(StrokeCommand.wipe());
+    }
+
+    public void undo() {
+        submit(StrokeCommand.undo());
+    }
+
+    public void redo() {
+        submit(StrokeCommand.redo());
+    }
+
+    /**
+     * Commits everything submitted so far and stops the thread. Does not block.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(this);
+    }
+
+    void submit(StrokeCommand command) {
+        queuedPoints.addAndGet(command.pointCount);
+        queue.offer(command);
+        LockSupport.unpark(this);
+    }
+
+    @Override
+    public void run() {
+        final Realm realm = Realm.getInstance(configuration);
+        try {
+            while (true) {
+                drainQueue();
+                if (commands.isEmpty()) {
+                    if (closed) {
+                        break;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                write(realm);
+            }
+        } finally {
+            realm.close();
+        }
+    }
+
+    private void drainQueue() {
+        StrokeCommand command;
+        while ((command = queue.poll()) != null) {
+            final StrokeCommand previous = previousCommand(command);
+            if (previous != null && previous.canMerge(command)) {
+                previous.append(command);
+            } else {
+                commands.add(command);
+            }
+        }
+    }
+
+    // The last pending command of the same stroke, so appends of strokes drawn at the same time
+    // by several pointers are merged even though they arrive interleaved. Nothing is merged across
+    // a wipe.
+    private StrokeCommand previousCommand(StrokeCommand command) {
+        if (command.strokeId == null) {
+            return null;
+        }
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            final StrokeCommand previous = commands.get(i);
+            if (previous.type == StrokeCommand.Type.WIPE) {
+                return null;
+            }
+            if (command.strokeId.equals(previous.strokeId)) {
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    private void write(Realm realm) {
+        // Counted up front, so the points of commands dropped by a failed transaction are no
+        // longer reported as queued either.
+        int points = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            points += commands.get(i).pointCount;
+        }
+        final long start = System.nanoTime();
+        realm.beginTransaction();
+        try {
+            generation = CanvasState.currentGeneration(realm);
+            for (int i = 0; i < commands.size(); i++) {
+                apply(realm, commands.get(i));
+            }
+            realm.commitTransaction();
+            recordCommit(start, System.nanoTime());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to write " + commands.size() + " stroke commands", e);
+            if (realm.isInTransaction()) {
+                realm.cancelTransaction();
+            }
+            openPaths.clear();
+        } finally {
+            commands.clear();
+            queuedPoints.addAndGet(-points);
+        }
+    }
+
+    private void recordCommit(long start, long end) {
+        long oldestInputNanos = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            final long inputNanos = commands.get(i).inputNanos;
+            if (inputNanos != 0) {
+                metrics.inputToCommit.record(DrawMetrics.toMicros(end - inputNanos));
+                if (oldestInputNanos == 0 || inputNanos < oldestInputNanos) {
+                    oldestInputNanos = inputNanos;
+                }
+            }
+        }
+        metrics.onLocalCommit(start, end, oldestInputNanos);
+    }
+
+    private void apply(Realm realm, StrokeCommand command) {
+        switch (command.type) {
+            case BEGIN:
+            case APPEND:
+                PathPoints.append(realm, findOrCreatePath(realm, command), command.points, command.pointCount,
+                        pointStorage, bounds);
+                break;
+            case COMPLETE: {
+                openPaths.remove(command.strokeId);
+                // A stroke wiped since its last points were written is not brought back empty.
+                final DrawPath path = findPath(realm, command.strokeId);
+                if (path == null) {
+                    break;
+                }
+                PathPoints.compact(path, simplifier);
+                path.setCompleted(true);
+                UndoHistory.recordStroke(realm, author, command.strokeId, generation);
+                break;
+            }
+            case CANCEL: {
+                final DrawPath path = findPath(realm, command.strokeId);
+                if (path != null) {
+                    path.getChunks().deleteAllFromRealm();
+                    path.getPoints().deleteAllFromRealm();
+                    path.deleteFromRealm();
+                }
+                openPaths.remove(command.strokeId);
+                break;
+            }
+            case WIPE:
+                // Strokes of the previous generation are deleted later by HistoryCompaction.
+                generation = CanvasState.startNewGeneration(realm);
+                openPaths.clear();
+                UndoHistory.recordWipe(realm, author, generation);
+                break;
+            case UNDO:
+                UndoHistory.undo(realm, author);
+                break;
+            case REDO:
+                UndoHistory.redo(realm, author);
+                break;
+        }
+    }
+
+    private DrawPath findPath(Realm realm, String strokeId) {
+        DrawPath path = openPaths.get(strokeId);
+        if (path == null || !path.isValid() || path.getGeneration() != generation) {
+            path = realm.where(DrawPath.class)
+                    .equalTo(DrawPath.FIELD_ID, strokeId)
+                    .equalTo(DrawPath.FIELD_GENERATION, generation)
+                    .findFirst();
+        }
+        return path;
+    }
+
+    // Recreating a path that is missing from the current generation keeps the tail of a stroke
+    // that was wiped mid-draw.
+    private DrawPath findOrCreatePath(Realm realm, StrokeCommand command) {
+        DrawPath path = findPath(realm, command.strokeId);
+        if (path == null) {
+            path = realm.createObject(DrawPath.class);
+            path.setId(command.strokeId);
+            path.setGeneration(generation);
+            path.setColorId(command.colorId);
+            // Other clients only read the color name.
+            path.setColor(Palette.nameOf(command.colorId));
+        }
+        openPaths.put(command.strokeId, path);
+        return path;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import android.view.MotionEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the samples of a pointer of a {@link MotionEvent}, including the historical ones
+ * batched by the platform between frames, into canvas coordinates.
+ * <p>
+ * The view offset and scale are cached when the surface changes and the output buffer is reused,
+ * so reading an event does not allocate once the buffer has grown to the usual batch size.
+ */
+public class TouchSampler {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The samples of one pointer, with the accessors of {@link MotionEvent} that are read.
+     */
+    interface Samples {
+        int getHistorySize();
+
+        float getHistoricalX(int pos);
+
+        float getHistoricalY(int pos);
+
+        long getHistoricalEventTime(int pos);
+
+        float getX();
+
+        float getY();
+
+        long getEventTime();
+    }
+
+    // Reused for every event, so reading one does not allocate.
+    private static final class EventSamples implements Samples {
+        MotionEvent event;
+        int pointerIndex;
+
+        @Override
+        public int getHistorySize() {
+            return event.getHistorySize();
+        }
+
+        @Override
+        public float getHistoricalX(int pos) {
+            return event.getHistoricalX(pointerIndex, pos);
+        }
+
+        @Override
+        public float getHistoricalY(int pos) {
+            return event.getHistoricalY(pointerIndex, pos);
+        }
+
+        @Override
+        public long getHistoricalEventTime(int pos) {
+            return event.getHistoricalEventTime(pos);
+        }
+
+        @Override
+        public float getX() {
+            return event.getX(pointerIndex);
+        }
+
+        @Override
+        public float getY() {
+            return event.getY(pointerIndex);
+        }
+
+        @Override
+        public long getEventTime() {
+            return event.getEventTime();
+        }
+    }
+
+    private final EventSamples eventSamples = new EventSamples();
+    private float[] points = new float[INITIAL_CAPACITY * 2];
+    private float offsetX;
+    private float offsetY;
+    private float ratio = -1;
+    private long eventTimeNanos;
+
+    /**
+     * @param offsetX left edge of the drawing area, in window coordinates.
+     * @param offsetY top edge of the drawing area, in window coordinates.
+     * @param ratio canvas units per pixel.
+     */
+    public void setTransform(float offsetX, float offsetY, float ratio) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.ratio = ratio;
+    }
+
+    public void clearTransform() {
+        ratio = -1;
+    }
+
+    public boolean hasTransform() {
+        return ratio > 0;
+    }
+
+    /**
+     * Reads the historical and current samples of the first pointer of {@code event}, oldest
+     * first, into {@link #getPoints()}.
+     *
+     * @return the number of points read.
+     */
+    public int read(MotionEvent event) {
+        return read(event, 0);
+    }
+
+    /**
+     * Reads the historical and current samples of the pointer at {@code pointerIndex} of
+     * {@code event}, oldest first, into {@link #getPoints()}.
+     *
+     * @return the number of points read.
+     */
+    public int read(MotionEvent event, int pointerIndex) {
+        eventSamples.event = event;
+        eventSamples.pointerIndex = pointerIndex;
+        final int count = read(eventSamples);
+        eventSamples.event = null;
+        return count;
+    }
+
+    int read(Samples samples) {
+        final int historySize = samples.getHistorySize();
+        final int count = historySize + 1;
+        if (points.length < count * 2) {
+            points = Arrays.copyOf(points, Math.max(points.length * 2, count * 2));
+        }
+        for (int h = 0; h < historySize; h++) {
+            points[h * 2] = (samples.getHistoricalX(h) - offsetX) * ratio;
+            points[h * 2 + 1] = (samples.getHistoricalY(h) - offsetY) * ratio;
+        }
+        points[historySize * 2] = (samples.getX() - offsetX) * ratio;
+        points[historySize * 2 + 1] = (samples.getY() - offsetY) * ratio;
+        // Event times use the uptime clock, which on Android is also the clock of System.nanoTime().
+        eventTimeNanos = TimeUnit.MILLISECONDS.toNanos(historySize > 0 ? samples.getHistoricalEventTime(0) : samples.getEventTime());
+        return count;
+    }
+
+    /**
+     * Interleaved x/y canvas coordinates filled by the last call to {@link #read(MotionEvent)}.
+     * The array is reused by the next call.
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    /**
+     * {@link System#nanoTime()} of the oldest sample read by the last call to
+     * {@link #read(MotionEvent)}.
+     */
+    public long getEventTimeNanos() {
+        return eventTimeNanos;
+    }
+}
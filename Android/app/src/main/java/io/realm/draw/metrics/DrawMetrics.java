@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput of the drawing pipeline, from touch input through the Realm commit to the
+ * frame that shows it. Durations are recorded in microseconds and timestamps are
+ * {@link System#nanoTime()} values.
+ * <p>
+ * Changes that follow a local commit are counted as local; all others as remote. Since remote
+ * commits carry no timestamp, remote changes are measured from the moment they are delivered.
+ */
+public class DrawMetrics {
+    /** Time spent handling a touch event on the UI thread. */
+    public final Histogram inputHandling = new Histogram();
+    /** From a touch sample to the commit that stored it. */
+    public final Histogram inputToCommit = new Histogram();
+    /** Duration of a write transaction. */
+    public final Histogram commitDuration = new Histogram();
+    /** From a local commit to the end of the frame that drew it. */
+    public final Histogram localCommitToFrame = new Histogram();
+    /** From the delivery of a remote change to the end of the frame that drew it. */
+    public final Histogram remoteChangeToFrame = new Histogram();
+    /** From a touch sample to the end of the frame that drew it. */
+    public final Histogram touchToFrame = new Histogram();
+    /** From a local commit until all local changes were uploaded. */
+    public final Histogram syncUpload = new Histogram();
+    /** Time spent rendering a frame. */
+    public final Histogram frameTime = new Histogram();
+    /** Number of strokes drawn per frame. */
+    public final Histogram pathsPerFrame = new Histogram();
+    /** Number of stroke points drawn per frame. */
+    public final Histogram pointsPerFrame = new Histogram();
+    /** From the commit of a simulated collaborator to the delivery of its change. */
+    public final Histogram remoteCommitToChange = new Histogram();
+    /** Java heap in use, in kilobytes. */
+    public final Histogram javaHeap = new Histogram();
+    /** Native heap in use, which holds the bitmaps, in kilobytes. */
+    public final Histogram nativeHeap = new Histogram();
+
+    private final String[] names = {
+            "inputHandlingUs", "inputToCommitUs", "commitDurationUs", "localCommitToFrameUs",
+            "remoteChangeToFrameUs", "touchToFrameUs", "syncUploadUs", "frameTimeUs",
+            "pathsPerFrame", "pointsPerFrame", "remoteCommitToChangeUs", "javaHeapKb", "nativeHeapKb"
+    };
+    private final Histogram[] histograms = {
+            inputHandling, inputToCommit, commitDuration, localCommitToFrame,
+            remoteChangeToFrame, touchToFrame, syncUpload, frameTime,
+            pathsPerFrame, pointsPerFrame, remoteCommitToChange, javaHeap, nativeHeap
+    };
+
+    // Handed from the writer to the render and sync threads, guarded by this.
+    private long pendingCommitNanos;
+    private long pendingInputNanos;
+    private long pendingUploadNanos;
+    private long pendingRemoteNanos;
+
+    // Only accessed on the render thread.
+    private long frameCommitNanos;
+    private long frameInputNanos;
+    private long frameRemoteNanos;
+
+    /**
+     * Records a local commit.
+     *
+     * @param oldestInputNanos time of the oldest touch sample in the commit, or 0 if unknown.
+     */
+    public void onLocalCommit(long startNanos, long endNanos, long oldestInputNanos) {
+        commitDuration.record(toMicros(endNanos - startNanos));
+        synchronized (this) {
+            if (pendingCommitNanos == 0) {
+                pendingCommitNanos = endNanos;
+            }
+            if (oldestInputNanos != 0 && (pendingInputNanos == 0 || oldestInputNanos < pendingInputNanos)) {
+                pendingInputNanos = oldestInputNanos;
+            }
+            if (pendingUploadNanos == 0) {
+                pendingUploadNanos = endNanos;
+            }
+        }
+    }
+
+    /**
+     * Records a commit made on behalf of a simulated collaborator. Its change is still counted as
+     * remote, but the delay until it is delivered can be measured.
+     */
+    public void onRemoteCommit(long endNanos) {
+        synchronized (this) {
+            if (pendingRemoteNanos == 0) {
+                pendingRemoteNanos = endNanos;
+            }
+        }
+    }
+
+    /**
+     * Records the memory in use.
+     */
+    public void onMemorySample(long javaHeapBytes, long nativeHeapBytes) {
+        javaHeap.record(javaHeapBytes / 1024);
+        nativeHeap.record(nativeHeapBytes / 1024);
+    }
+
+    /**
+     * Records that all local changes were uploaded.
+     */
+    public void onUploadComplete(long nowNanos) {
+        final long since;
+        synchronized (this) {
+            since = pendingUploadNanos;
+            pendingUploadNanos = 0;
+        }
+        if (since != 0) {
+            syncUpload.record(toMicros(nowNanos - since));
+        }
+    }
+
+    /**
+     * Records that a change notification was delivered to the render thread.
+     */
+    public void onChangeDelivered(long nowNanos) {
+        final long commitNanos;
+        final long inputNanos;
+        final long remoteNanos;
+        synchronized (this) {
+            commitNanos = pendingCommitNanos;
+            inputNanos = pendingInputNanos;
+            remoteNanos = pendingRemoteNanos;
+            pendingCommitNanos = 0;
+            pendingInputNanos = 0;
+            pendingRemoteNanos = 0;
+        }
+        if (remoteNanos != 0) {
+            remoteCommitToChange.record(toMicros(nowNanos - remoteNanos));
+        }
+        if (commitNanos == 0) {
+            if (frameRemoteNanos == 0) {
+                frameRemoteNanos = nowNanos;
+            }
+            return;
+        }
+        if (frameCommitNanos == 0) {
+            frameCommitNanos = commitNanos;
+        }
+        if (inputNanos != 0 && (frameInputNanos == 0 || inputNanos < frameInputNanos)) {
+            frameInputNanos = inputNanos;
+        }
+    }
+
+    /**
+     * Records a rendered frame, which shows all changes delivered before it started.
+     */
+    public void onFrame(long startNanos, long endNanos, int paths, int points) {
+        frameTime.record(toMicros(endNanos - startNanos));
+        pathsPerFrame.record(paths);
+        pointsPerFrame.record(points);
+        if (frameCommitNanos != 0) {
+            localCommitToFrame.record(toMicros(endNanos - frameCommitNanos));
+            frameCommitNanos = 0;
+        }
+        if (frameInputNanos != 0) {
+            touchToFrame.record(toMicros(endNanos - frameInputNanos));
+            frameInputNanos = 0;
+        }
+        if (frameRemoteNanos != 0) {
+            remoteChangeToFrame.record(toMicros(endNanos - frameRemoteNanos));
+            frameRemoteNanos = 0;
+        }
+    }
+
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Appends one line per histogram with its count, mean, percentiles and maximum.
+     */
+    public void writeText(StringBuilder out) {
+        for (int i = 0; i < names.length; i++) {
+            final Histogram histogram = histograms[i];
+            out.append(String.format(Locale.US, "%-22s n=%-7d mean=%-9.1f p50=%-8d p90=%-8d p99=%-8d max=%d%n",
+                    names[i], histogram.getCount(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99), histogram.getMax()));
+        }
+    }
+
+    /**
+     * Appends a JSON object with one member per histogram.
+     */
+    public void writeJson(StringBuilder out) {
+        out.append('{');
+        for (int i = 0; i < names.length; i++) {
+            final Histogram histogram = histograms[i];
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('"').append(names[i]).append("\":{")
+                    .append("\"count\":").append(histogram.getCount())
+                    .append(",\"mean\":").append(String.format(Locale.US, "%.1f", histogram.getMean()))
+                    .append(",\"p50\":").append(histogram.getValueAtPercentile(50))
+                    .append(",\"p90\":").append(histogram.getValueAtPercentile(90))
+                    .append(",\"p99\":").append(histogram.getValueAtPercentile(99))
+                    .append(",\"max\":").append(histogram.getMax())
+                    .append('}');
+        }
+        out.append('}');
+    }
+
+    public static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
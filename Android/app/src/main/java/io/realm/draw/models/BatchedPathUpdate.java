@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import android.util.Log;
+
+import java.util.List;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+
+/**
+ * Updates the strokes matched by a query in small asynchronous transactions, so a large canvas
+ * never holds the write lock for long. Every transaction updates at most one batch and the next
+ * one is started until the query matches no more strokes.
+ * <p>
+ * Synchronized Realms only accept additive schema changes, so data migrations are run this way
+ * rather than as a {@link io.realm.RealmMigration}.
+ */
+final class BatchedPathUpdate {
+
+    /**
+     * The query and update of a batch. Both run on a background thread in the same transaction,
+     * so they must only use the Realm they are given.
+     */
+    interface Batch {
+        /**
+         * Returns the strokes still to update. An update must remove a stroke from the results.
+         */
+        RealmResults<DrawPath> query(Realm realm);
+
+        void update(Realm realm, List<DrawPath> paths);
+    }
+
+    private final Realm realm;
+    private final Batch batch;
+    private final int batchSize;
+    private final String tag;
+    private final String errorMessage;
+    private boolean running;
+    private boolean rerun;
+    private boolean cancelled;
+
+    BatchedPathUpdate(Realm realm, Batch batch, int batchSize, String tag, String errorMessage) {
+        this.realm = realm;
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.tag = tag;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Starts updating in the background, or queries again once the current run is done. Must be
+     * called on a thread with a Looper.
+     */
+    void start() {
+        if (running) {
+            rerun = true;
+            return;
+        }
+        running = true;
+        updateNextBatch();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void updateNextBatch() {
+        if (cancelled) {
+            return;
+        }
+        final BatchTransaction transaction = new BatchTransaction(batch, batchSize);
+        realm.executeTransactionAsync(transaction,
+                new Realm.Transaction.OnSuccess() {
+                    @Override
+                    public void onSuccess() {
+                        if (transaction.hasMore || rerun) {
+                            rerun = false;
+                            updateNextBatch();
+                        } else {
+                            running = false;
+                        }
+                    }
+                },
+                new Realm.Transaction.OnError() {
+                    @Override
+                    public void onError(Throwable error) {
+                        running = false;
+                        Log.e(tag, errorMessage, error);
+                    }
+                });
+    }
+
+    private static class BatchTransaction implements Realm.Transaction {
+        private final Batch batch;
+        private final int batchSize;
+        volatile boolean hasMore;
+
+        BatchTransaction(Batch batch, int batchSize) {
+            this.batch = batch;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void execute(Realm realm) {
+            final RealmResults<DrawPath> paths = batch.query(realm);
+            final int count = Math.min(paths.size(), batchSize);
+            hasMore = paths.size() > count;
+            batch.update(realm, paths.createSnapshot().subList(0, count));
+        }
+    }
+}
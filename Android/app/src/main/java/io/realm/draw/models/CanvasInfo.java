@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.Realm;
+import io.realm.RealmObject;
+import io.realm.RealmResults;
+import io.realm.Sort;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * An entry of the canvas index. Every canvas is stored in a Realm of its own, so the size and sync
+ * traffic of one canvas do not affect the others; the index only holds what is needed to list the
+ * canvases and is the only Realm that is opened for all of them.
+ */
+public class CanvasInfo extends RealmObject {
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_LAST_OPENED = "lastOpened";
+
+    /** The canvas that was drawn on before there were several. */
+    public static final String DEFAULT_ID = "default";
+
+    private static final int MAX_ID_LENGTH = 64;
+
+    @PrimaryKey
+    private String id;
+    private String name;
+    private long createdAt;
+    private long lastOpened;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getLastOpened() {
+        return lastOpened;
+    }
+
+    public void setLastOpened(long lastOpened) {
+        this.lastOpened = lastOpened;
+    }
+
+    /**
+     * Whether {@code id} can name a canvas. Ids are part of the Realm URL of a canvas, so only
+     * letters, digits, '-' and '_' are allowed.
+     */
+    public static boolean isValidId(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that the canvas {@code id} was opened at {@code now}, adding it to the index if it is
+     * new. Must be called in a write transaction.
+     */
+    public static void opened(Realm realm, String id, long now) {
+        CanvasInfo info = realm.where(CanvasInfo.class).equalTo(FIELD_ID, id).findFirst();
+        if (info == null) {
+            info = realm.createObject(CanvasInfo.class, id);
+            info.setName(id);
+            info.setCreatedAt(now);
+        }
+        info.setLastOpened(now);
+    }
+
+    /**
+     * All canvases, the most recently opened first.
+     */
+    public static RealmResults<CanvasInfo> recent(Realm realm) {
+        return realm.where(CanvasInfo.class).findAllSorted(FIELD_LAST_OPENED, Sort.DESCENDING);
+    }
+}
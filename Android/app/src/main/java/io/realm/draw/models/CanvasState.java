@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.Realm;
+import io.realm.RealmObject;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * Shared state of the canvas. Wiping the canvas starts a new generation instead of deleting every
+ * stroke; only strokes of the current generation are drawn, and a {@link HistoryCompaction}
+ * deletes the older ones in the background.
+ * <p>
+ * Older Android clients and the iOS and Xamarin apps do not know about generations:
+ * <ul>
+ * <li>Their strokes have {@link #NO_GENERATION} and are drawn in every generation until a
+ * {@link HistoryCompaction} moves them into the current one. A wipe moves those it has not moved
+ * yet into the generation that ends.</li>
+ * <li>They draw every stroke, so a wipe here only reaches them once the old generation was
+ * deleted by a {@link HistoryCompaction}.</li>
+ * <li>Their clear deletes all {@link DrawPath} and {@link DrawPoint} objects, including strokes
+ * undone here. The generation is kept and drawing goes on in it. Undo skips strokes that are
+ * gone, and {@link PointChunk}s of strokes stored packed are left behind.</li>
+ * </ul>
+ */
+public class CanvasState extends RealmObject {
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_GENERATION = "generation";
+
+    public static final String DEFAULT_ID = "default";
+    /** Generation of strokes written by clients that do not know about generations. */
+    public static final long NO_GENERATION = 0;
+    public static final long FIRST_GENERATION = 1;
+
+    @PrimaryKey
+    private String id;
+    private long generation;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    public static long currentGeneration(Realm realm) {
+        final CanvasState state = realm.where(CanvasState.class).equalTo(FIELD_ID, DEFAULT_ID).findFirst();
+        return generationOf(state);
+    }
+
+    public static long generationOf(CanvasState state) {
+        return state == null || !state.isValid() ? FIRST_GENERATION : Math.max(FIRST_GENERATION, state.getGeneration());
+    }
+
+    /**
+     * Wipes the canvas by starting a new generation. Strokes without a generation that a
+     * {@link HistoryCompaction} has not moved into the ending generation yet are moved now, so
+     * they are hidden and deleted with it. Must be called in a write transaction.
+     *
+     * @return the new generation.
+     */
+    public static long startNewGeneration(Realm realm) {
+        CanvasState state = realm.where(CanvasState.class).equalTo(FIELD_ID, DEFAULT_ID).findFirst();
+        final long previous = generationOf(state);
+        if (state == null) {
+            state = realm.createObject(CanvasState.class, DEFAULT_ID);
+        }
+        state.setGeneration(previous + 1);
+
+        final RealmResults<DrawPath> foreignPaths = realm.where(DrawPath.class)
+                .equalTo(DrawPath.FIELD_GENERATION, NO_GENERATION)
+                .findAll();
+        for (DrawPath path : foreignPaths.createSnapshot()) {
+            path.setGeneration(previous);
+        }
+        return previous + 1;
+    }
+
+    /**
+     * Strokes that are drawn in {@code generation}, including those of clients that do not store
+     * a generation.
+     */
+    public static RealmQuery<DrawPath> visiblePaths(Realm realm, long generation) {
+        return realm.where(DrawPath.class)
+                .equalTo(DrawPath.FIELD_GENERATION, generation)
+                .or()
+                .equalTo(DrawPath.FIELD_GENERATION, NO_GENERATION);
+    }
+}
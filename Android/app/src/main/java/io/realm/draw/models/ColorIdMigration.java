@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import java.util.List;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+
+/**
+ * Stores the {@link Palette} color id on strokes that only have a color name, so they can be
+ * drawn without looking the name up. Strokes with an unknown name get {@link Palette#DEFAULT_ID},
+ * the color they were drawn with before.
+ * <p>
+ * This is a data migration running in the small asynchronous transactions of a
+ * {@link BatchedPathUpdate}. Only this field is written, so strokes that are still open are
+ * migrated too.
+ */
+public class ColorIdMigration {
+    private static final String TAG = "ColorIdMigration";
+    private static final int PATHS_PER_TRANSACTION = 500;
+
+    private final BatchedPathUpdate update;
+
+    public ColorIdMigration(Realm realm) {
+        this.update = new BatchedPathUpdate(realm, new ColorIdBatch(), PATHS_PER_TRANSACTION, TAG,
+                "Failed to migrate colors");
+    }
+
+    /**
+     * Starts migrating in the background. Must be called on a thread with a Looper.
+     */
+    public void start() {
+        update.start();
+    }
+
+    public void cancel() {
+        update.cancel();
+    }
+
+    private static class ColorIdBatch implements BatchedPathUpdate.Batch {
+        @Override
+        public RealmResults<DrawPath> query(Realm realm) {
+            return realm.where(DrawPath.class)
+                    .equalTo(DrawPath.FIELD_COLOR_ID, Palette.NO_ID)
+                    .findAll();
+        }
+
+        @Override
+        public void update(Realm realm, List<DrawPath> paths) {
+            for (DrawPath path : paths) {
+                path.setColorId(Palette.resolve(path));
+            }
+        }
+    }
+}
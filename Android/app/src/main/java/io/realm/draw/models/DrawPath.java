@@ -18,11 +18,39 @@ package io.realm.draw.models;
 
 import io.realm.RealmList;
 import io.realm.RealmObject;
+import io.realm.annotations.Index;
 
 public class DrawPath extends RealmObject {
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_COMPLETED = "completed";
+    public static final String FIELD_COLOR = "color";
+    public static final String FIELD_COLOR_ID = "colorId";
+    public static final String FIELD_POINTS = "points";
+    public static final String FIELD_PACKED_POINTS = "packedPoints";
+    public static final String FIELD_GENERATION = "generation";
+
+    @Index
+    private String id;
     private boolean completed;
     private String color;
+    private int colorId;
     private RealmList<DrawPoint> points;
+    private byte[] packedPoints;
+    private RealmList<PointChunk> chunks;
+    private float minX;
+    private float minY;
+    private float maxX;
+    private float maxY;
+    @Index
+    private long generation;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
 
     public boolean isCompleted() {
         return completed;
@@ -40,6 +68,18 @@ public class DrawPath extends RealmObject {
         this.color = color;
     }
 
+    /**
+     * Id of the color in the {@link Palette}, or {@link Palette#NO_ID} for strokes written by
+     * clients that only store the {@link #getColor() color name}.
+     */
+    public int getColorId() {
+        return colorId;
+    }
+
+    public void setColorId(int colorId) {
+        this.colorId = colorId;
+    }
+
     public RealmList<DrawPoint> getPoints() {
         return points;
     }
@@ -47,4 +87,64 @@ public class DrawPath extends RealmObject {
     public void setPoints(RealmList<DrawPoint> points) {
         this.points = points;
     }
+
+    public byte[] getPackedPoints() {
+        return packedPoints;
+    }
+
+    public void setPackedPoints(byte[] packedPoints) {
+        this.packedPoints = packedPoints;
+    }
+
+    public RealmList<PointChunk> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(RealmList<PointChunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public void setMinX(float minX) {
+        this.minX = minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public void setMinY(float minY) {
+        this.minY = minY;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public void setMaxX(float maxX) {
+        this.maxX = maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    public void setMaxY(float maxY) {
+        this.maxY = maxY;
+    }
+
+    /**
+     * The {@link CanvasState#getGeneration() canvas generation} the stroke was drawn in, or
+     * {@link CanvasState#NO_GENERATION} for strokes written by clients that do not store it.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
 }
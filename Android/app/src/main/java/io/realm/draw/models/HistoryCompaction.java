@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import java.util.List;
+
+import io.realm.Realm;
+import io.realm.RealmChangeListener;
+import io.realm.RealmResults;
+
+/**
+ * Deletes the strokes of generations older than the current {@link CanvasState} generation, along
+ * with their points, after the canvas was wiped. This includes strokes that were undone before
+ * the wipe.
+ * <p>
+ * It also moves strokes of clients that do not store a generation into the current one, so they
+ * are deleted like any other stroke once the canvas is wiped. See {@link CanvasState} for how
+ * this works out with those clients.
+ * <p>
+ * Like {@link ColorIdMigration} this runs in the small asynchronous transactions of a
+ * {@link BatchedPathUpdate}, so a wipe of a large canvas never holds the write lock for long. The
+ * space freed in the Realm file is reclaimed when the canvas is next opened, which compacts it in
+ * the background.
+ */
+public class HistoryCompaction {
+    private static final String TAG = "HistoryCompaction";
+    private static final int PATHS_PER_TRANSACTION = 200;
+
+    private final Realm realm;
+    private final BatchedPathUpdate update;
+    private final BatchedPathUpdate adoption;
+    private RealmResults<CanvasState> states;
+    private RealmResults<DrawPath> foreignPaths;
+
+    private final RealmChangeListener<RealmResults<CanvasState>> stateListener =
+            new RealmChangeListener<RealmResults<CanvasState>>() {
+                @Override
+                public void onChange(RealmResults<CanvasState> states) {
+                    update.start();
+                }
+            };
+
+    private final RealmChangeListener<RealmResults<DrawPath>> foreignPathsListener =
+            new RealmChangeListener<RealmResults<DrawPath>>() {
+                @Override
+                public void onChange(RealmResults<DrawPath> paths) {
+                    if (!paths.isEmpty()) {
+                        adoption.start();
+                    }
+                }
+            };
+
+    public HistoryCompaction(Realm realm) {
+        this.realm = realm;
+        this.update = new BatchedPathUpdate(realm, new DeleteBatch(), PATHS_PER_TRANSACTION, TAG,
+                "Failed to delete old strokes");
+        this.adoption = new BatchedPathUpdate(realm, new AdoptBatch(), PATHS_PER_TRANSACTION, TAG,
+                "Failed to move strokes into the current generation");
+    }
+
+    /**
+     * Deletes old generations now and whenever a new generation starts, and moves strokes without
+     * a generation whenever they arrive. Must be called on a thread with a Looper.
+     */
+    public void start() {
+        states = realm.where(CanvasState.class).findAll();
+        states.addChangeListener(stateListener);
+        foreignPaths = realm.where(DrawPath.class)
+                .equalTo(DrawPath.FIELD_GENERATION, CanvasState.NO_GENERATION)
+                .findAllAsync();
+        foreignPaths.addChangeListener(foreignPathsListener);
+        update.start();
+    }
+
+    public void cancel() {
+        update.cancel();
+        adoption.cancel();
+        if (states != null) {
+            states.removeChangeListener(stateListener);
+            states = null;
+        }
+        if (foreignPaths != null) {
+            foreignPaths.removeChangeListener(foreignPathsListener);
+            foreignPaths = null;
+        }
+    }
+
+    static class AdoptBatch implements BatchedPathUpdate.Batch {
+        @Override
+        public RealmResults<DrawPath> query(Realm realm) {
+            return realm.where(DrawPath.class)
+                    .equalTo(DrawPath.FIELD_GENERATION, CanvasState.NO_GENERATION)
+                    .findAll();
+        }
+
+        @Override
+        public void update(Realm realm, List<DrawPath> paths) {
+            final long generation = CanvasState.currentGeneration(realm);
+            for (DrawPath path : paths) {
+                path.setGeneration(generation);
+            }
+        }
+    }
+
+    static class DeleteBatch implements BatchedPathUpdate.Batch {
+        @Override
+        public RealmResults<DrawPath> query(Realm realm) {
+            final long generation = CanvasState.currentGeneration(realm);
+            // Strokes undone in the current generation are kept in its negated generation, so
+            // they can be redone.
+            return realm.where(DrawPath.class)
+                    .notEqualTo(DrawPath.FIELD_GENERATION, CanvasState.NO_GENERATION)
+                    .notEqualTo(DrawPath.FIELD_GENERATION, -generation)
+                    .lessThan(DrawPath.FIELD_GENERATION, generation)
+                    .findAll();
+        }
+
+        @Override
+        public void update(Realm realm, List<DrawPath> paths) {
+            for (DrawPath path : paths) {
+                path.getChunks().deleteAllFromRealm();
+                path.getPoints().deleteAllFromRealm();
+                path.deleteFromRealm();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The colors a stroke can have. New strokes store the compact {@link DrawPath#getColorId() color
+ * id} next to the color name that the Apple and Xamarin clients read; strokes from clients that
+ * only store the name are mapped through {@link #resolve(DrawPath)}.
+ * <p>
+ * Ids are persisted, so entries may only be appended. Id 0 means that no id was stored.
+ */
+public final class Palette {
+    public static final int NO_ID = 0;
+    public static final int DEFAULT_ID = 1;
+
+    private static final String[] NAMES = {
+            null,
+            "Charcoal",
+            "Elephant",
+            "Dove",
+            "Ultramarine",
+            "Indigo",
+            "GrapeJelly",
+            "Mulberry",
+            "Flamingo",
+            "SexySalmon",
+            "Peach",
+            "Melon"
+    };
+
+    private static final int[] COLORS = {
+            0,
+            0xff1c283f,
+            0xff9a9ba5,
+            0xffebebf2,
+            0xff39477f,
+            0xff59569e,
+            0xff9a50a5,
+            0xffd34ca3,
+            0xfffe5192,
+            0xfff77c88,
+            0xfffc9f95,
+            0xfffcc397
+    };
+
+    private static final Map<String, Integer> IDS_BY_NAME = new HashMap<>();
+
+    static {
+        for (int id = DEFAULT_ID; id < NAMES.length; id++) {
+            IDS_BY_NAME.put(NAMES[id], id);
+        }
+    }
+
+    private Palette() {
+    }
+
+    /**
+     * Number of ids, including {@link #NO_ID}. Valid color ids are {@code 1} to {@code size() - 1}.
+     */
+    public static int size() {
+        return NAMES.length;
+    }
+
+    /**
+     * Returns the id of the color called {@code name}, or {@link #NO_ID} if there is none.
+     */
+    public static int idOf(String name) {
+        final Integer id = name == null ? null : IDS_BY_NAME.get(name);
+        return id != null ? id : NO_ID;
+    }
+
+    public static String nameOf(int id) {
+        return NAMES[id];
+    }
+
+    public static int colorOf(int id) {
+        return COLORS[id];
+    }
+
+    /**
+     * Returns the color id of {@code path}. Strokes without an id are looked up by name, and
+     * strokes with an unknown color get {@link #DEFAULT_ID}.
+     */
+    public static int resolve(DrawPath path) {
+        final int id = path.getColorId();
+        if (id > NO_ID && id < NAMES.length) {
+            return id;
+        }
+        final int named = idOf(path.getColor());
+        return named != NO_ID ? named : DEFAULT_ID;
+    }
+}
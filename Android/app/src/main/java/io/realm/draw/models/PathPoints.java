@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.Realm;
+import io.realm.RealmList;
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.StrokeSimplifier;
+
+/**
+ * Reads and writes the points of a {@link DrawPath} regardless of whether they are stored as
+ * {@link DrawPoint} objects, a packed block or packed chunks of a stroke still in progress.
+ * <p>
+ * Writes also keep the bounding box stored on the path up to date. Paths written by clients that
+ * do not store bounds have all four fields at zero; their bounds are computed from the points.
+ */
+public final class PathPoints {
+
+    private PathPoints() {
+    }
+
+    public static int count(DrawPath path) {
+        int count = PointCodec.pointCount(path.getPackedPoints());
+        final RealmList<PointChunk> chunks = path.getChunks();
+        for (int i = 0; i < chunks.size(); i++) {
+            count += PointCodec.pointCount(chunks.get(i).getData());
+        }
+        return count + path.getPoints().size();
+    }
+
+    /**
+     * Copies all points of {@code path} into {@code destination} as interleaved x/y pairs. The
+     * array must hold at least {@link #count(DrawPath)} points.
+     *
+     * @return the number of points copied.
+     */
+    public static int read(DrawPath path, float[] destination) {
+        return read(path, 0, destination);
+    }
+
+    /**
+     * Copies the points of {@code path} from index {@code first} onwards into {@code destination}
+     * as interleaved x/y pairs, skipping storage blocks that lie entirely before {@code first}.
+     *
+     * @return the number of points copied.
+     */
+    public static int read(DrawPath path, int first, float[] destination) {
+        int start = 0;
+        int copied = 0;
+
+        final byte[] packed = path.getPackedPoints();
+        int size = PointCodec.pointCount(packed);
+        if (first < start + size) {
+            final int skip = Math.max(0, first - start);
+            copied += PointCodec.decode(packed, skip, size - skip, destination, copied);
+        }
+        start += size;
+
+        final RealmList<PointChunk> chunks = path.getChunks();
+        for (int i = 0; i < chunks.size(); i++) {
+            final byte[] data = chunks.get(i).getData();
+            size = PointCodec.pointCount(data);
+            if (first < start + size) {
+                final int skip = Math.max(0, first - start);
+                copied += PointCodec.decode(data, skip, size - skip, destination, copied);
+            }
+            start += size;
+        }
+
+        final RealmList<DrawPoint> points = path.getPoints();
+        for (int i = Math.max(0, first - start); i < points.size(); i++) {
+            final DrawPoint point = points.get(i);
+            destination[copied * 2] = (float) point.getX();
+            destination[copied * 2 + 1] = (float) point.getY();
+            copied++;
+        }
+        return copied;
+    }
+
+    /**
+     * Appends {@code count} interleaved x/y points to {@code path}. Must be called in a write
+     * transaction. Only the new points are read, so an append costs the same however long the
+     * stroke already is.
+     *
+     * @param bounds scratch space for the new bounds of the path, reused by the caller.
+     */
+    public static void append(Realm realm, DrawPath path, float[] points, int count, PointStorage storage,
+                              Bounds bounds) {
+        if (count == 0) {
+            return;
+        }
+        // Counting the points would read every chunk, and open strokes are never packed.
+        if (!path.getChunks().isEmpty() || !path.getPoints().isEmpty()) {
+            bounds(path, bounds);
+        } else {
+            bounds.setEmpty();
+        }
+        bounds.union(points, count);
+        setBounds(path, bounds);
+
+        if (storage == PointStorage.PACKED) {
+            final PointChunk chunk = realm.createObject(PointChunk.class);
+            chunk.setData(PointCodec.encode(points, 0, count));
+            path.getChunks().add(chunk);
+        } else {
+            for (int i = 0; i < count; i++) {
+                final DrawPoint point = realm.createObject(DrawPoint.class);
+                point.setX(points[i * 2]);
+                point.setY(points[i * 2 + 1]);
+                path.getPoints().add(point);
+            }
+        }
+    }
+
+    /**
+     * Reads the bounding box of the points of {@code path} into {@code bounds}, which is left
+     * empty for a path without points.
+     */
+    public static void bounds(DrawPath path, Bounds bounds) {
+        if (path.getMinX() != 0 || path.getMinY() != 0 || path.getMaxX() != 0 || path.getMaxY() != 0) {
+            bounds.set(path.getMinX(), path.getMinY(), path.getMaxX(), path.getMaxY());
+            return;
+        }
+        bounds.setEmpty();
+        final int count = count(path);
+        if (count > 0) {
+            final float[] points = new float[count * 2];
+            read(path, points);
+            bounds.union(points, count);
+        }
+    }
+
+    /**
+     * Stores {@code bounds} on {@code path}. Must be called in a write transaction.
+     */
+    public static void setBounds(DrawPath path, Bounds bounds) {
+        path.setMinX(bounds.left);
+        path.setMinY(bounds.top);
+        path.setMaxX(bounds.right);
+        path.setMaxY(bounds.bottom);
+    }
+
+    /**
+     * Merges the chunks of a completed stroke into its packed block, simplifying the points first
+     * if {@code simplifier} is not {@code null}. Must be called in a write transaction.
+     */
+    public static void compact(DrawPath path, StrokeSimplifier simplifier) {
+        final RealmList<PointChunk> chunks = path.getChunks();
+        if (chunks.isEmpty()) {
+            return;
+        }
+        if (simplifier != null) {
+            final float[] points = new float[count(path) * 2];
+            final int count = simplifier.simplify(points, read(path, points));
+            path.setPackedPoints(PointCodec.encode(points, 0, count));
+            chunks.deleteAllFromRealm();
+            return;
+        }
+
+        final byte[] existing = path.getPackedPoints();
+        int length = existing == null ? 0 : existing.length;
+        for (int i = 0; i < chunks.size(); i++) {
+            length += chunks.get(i).getData().length;
+        }
+        final byte[] packed = new byte[length];
+        int offset = 0;
+        if (existing != null) {
+            System.arraycopy(existing, 0, packed, 0, existing.length);
+            offset = existing.length;
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            final byte[] data = chunks.get(i).getData();
+            System.arraycopy(data, 0, packed, offset, data.length);
+            offset += data.length;
+        }
+        path.setPackedPoints(packed);
+        chunks.deleteAllFromRealm();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import java.util.Arrays;
+
+import io.realm.RealmList;
+import io.realm.draw.codec.PointCodec;
+
+/**
+ * Reads the points of a {@link DrawPath} incrementally: it remembers which storage blocks were
+ * read, so points appended later are read without decoding or even copying the earlier ones out
+ * of Realm again. Coordinates are decoded straight into a float array.
+ * <p>
+ * When the stroke is rewritten, because it was compacted or simplified, the cursor
+ * becomes {@link #isStale(DrawPath) stale} and has to be {@link #reset()} and read from the start.
+ */
+public final class PointCursor {
+    private boolean packedRead;
+    private int chunksRead;
+    private int pointsRead;
+    private int position;
+    private int lastCount;
+
+    public void reset() {
+        packedRead = false;
+        chunksRead = 0;
+        pointsRead = 0;
+        position = 0;
+        lastCount = 0;
+    }
+
+    /**
+     * Number of points read since the last {@link #reset()}.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Number of points read by the last call to {@link #readNew(DrawPath, float[])}.
+     */
+    public int getLastCount() {
+        return lastCount;
+    }
+
+    /**
+     * Whether storage blocks that were read have been removed from {@code path} since.
+     */
+    public boolean isStale(DrawPath path) {
+        return path.getChunks().size() < chunksRead || path.getPoints().size() < pointsRead;
+    }
+
+    /**
+     * Reads the points added to {@code path} since the last call into {@code destination} as
+     * interleaved x/y pairs, growing it if needed.
+     *
+     * @return {@code destination}, or a larger copy of it.
+     */
+    public float[] readNew(DrawPath path, float[] destination) {
+        int count = 0;
+        if (!packedRead) {
+            // Only completed strokes have a packed block, and it does not change afterwards.
+            final byte[] packed = path.getPackedPoints();
+            if (packed != null) {
+                final int size = PointCodec.pointCount(packed);
+                destination = ensureCapacity(destination, size);
+                count += PointCodec.decode(packed, destination, 0);
+                packedRead = true;
+            }
+        }
+
+        final RealmList<PointChunk> chunks = path.getChunks();
+        final int chunkCount = chunks.size();
+        for (; chunksRead < chunkCount; chunksRead++) {
+            final byte[] data = chunks.get(chunksRead).getData();
+            destination = ensureCapacity(destination, count + PointCodec.pointCount(data));
+            count += PointCodec.decode(data, destination, count);
+        }
+
+        final RealmList<DrawPoint> points = path.getPoints();
+        final int pointCount = points.size();
+        destination = ensureCapacity(destination, count + pointCount - pointsRead);
+        for (; pointsRead < pointCount; pointsRead++) {
+            final DrawPoint point = points.get(pointsRead);
+            destination[count * 2] = (float) point.getX();
+            destination[count * 2 + 1] = (float) point.getY();
+            count++;
+        }
+
+        position += count;
+        lastCount = count;
+        return destination;
+    }
+
+    private static float[] ensureCapacity(float[] points, int requiredPoints) {
+        if (points.length < requiredPoints * 2) {
+            return Arrays.copyOf(points, Math.max(points.length * 2, requiredPoints * 2));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+/**
+ * How the points of new strokes are written. Existing strokes are read in either format and are
+ * never converted, since other clients may only read their {@link DrawPoint} objects.
+ */
+public enum PointStorage {
+    /**
+     * One {@link DrawPoint} object per sample, as read by every Realm Draw client.
+     */
+    LEGACY,
+
+    /**
+     * Packed coordinate blocks, see {@link io.realm.draw.codec.PointCodec}. Strokes stored this way
+     * are not visible to clients that only read {@link DrawPath#getPoints()}, such as the iOS and
+     * Xamarin apps, so this is only for canvases drawn on by this app alone.
+     */
+    PACKED
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.RealmResults;
+import io.realm.draw.export.StrokeBatch;
+import io.realm.draw.export.StrokeReader;
+import io.realm.draw.export.StrokeSource;
+
+/**
+ * The strokes of the current canvas generation, so they can be exported. Every reader opens its
+ * own Realm on the thread that opens it and must be closed on that thread.
+ */
+public class RealmStrokeSource implements StrokeSource {
+    private final RealmConfiguration configuration;
+    private final float canvasSize;
+
+    public RealmStrokeSource(RealmConfiguration configuration, float canvasSize) {
+        this.configuration = configuration;
+        this.canvasSize = canvasSize;
+    }
+
+    @Override
+    public float getCanvasSize() {
+        return canvasSize;
+    }
+
+    @Override
+    public StrokeReader open() {
+        final Realm realm = Realm.getInstance(configuration);
+        final RealmResults<DrawPath> paths = CanvasState.visiblePaths(realm, CanvasState.currentGeneration(realm))
+                .findAll();
+        return new StrokeReader() {
+            private float[] points = new float[0];
+            private int next;
+
+            @Override
+            public int read(StrokeBatch batch) {
+                batch.clear();
+                while (next < paths.size() && !batch.isFull()) {
+                    final DrawPath path = paths.get(next++);
+                    final int count = PathPoints.count(path);
+                    if (count == 0) {
+                        continue;
+                    }
+                    if (points.length < count * 2) {
+                        points = new float[count * 2];
+                    }
+                    PathPoints.read(path, points);
+                    batch.add(Palette.colorOf(Palette.resolve(path)), points, count);
+                }
+                return batch.size();
+            }
+
+            @Override
+            public void close() {
+                realm.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * An entry of the operation log of one author, see {@link UndoHistory}.
+ */
+public class StrokeOperation extends RealmObject {
+    public static final String FIELD_KEY = "key";
+
+    /** A stroke was completed. Undoing it hides the stroke. */
+    public static final int TYPE_ADD_STROKE = 1;
+    /** The canvas was wiped. Wipes cannot be undone, since the wiped strokes are compacted away. */
+    public static final int TYPE_WIPE = 2;
+
+    @PrimaryKey
+    private String key;
+    private String author;
+    private long sequence;
+    private int type;
+    private String strokeId;
+    private long generation;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public String getStrokeId() {
+        return strokeId;
+    }
+
+    public void setStrokeId(String strokeId) {
+        this.strokeId = strokeId;
+    }
+
+    /**
+     * Generation the operation was done in.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    static String keyOf(String author, long sequence) {
+        return author + "/" + sequence;
+    }
+}
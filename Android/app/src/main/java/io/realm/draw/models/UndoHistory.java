@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.models;
+
+import io.realm.Realm;
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * The undo history of one author: a log of {@link StrokeOperation}s numbered from 1, and a cursor
+ * at the last operation that is in effect. Operations after the cursor can be redone until a new
+ * one is recorded.
+ * <p>
+ * Every step looks up one operation and one stroke by indexed keys, so undo costs the same on a
+ * canvas of any size. Undoing a stroke does not delete it but moves it to the negated generation,
+ * which hides it from {@link CanvasState#visiblePaths}, so redoing it only moves it back. Only the
+ * last {@link #MAX_OPERATIONS} operations are kept.
+ */
+public class UndoHistory extends RealmObject {
+    public static final String FIELD_AUTHOR = "author";
+
+    static final int MAX_OPERATIONS = 100;
+
+    @PrimaryKey
+    private String author;
+    private long first;
+    private long position;
+    private long end;
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    /**
+     * Sequence of the oldest operation kept.
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    public void setFirst(long first) {
+        this.first = first;
+    }
+
+    /**
+     * Sequence of the last operation in effect, or {@code first - 1} if all were undone.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    /**
+     * Sequence of the last operation recorded.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
+    /**
+     * Records that {@code author} completed the stroke {@code strokeId}. Must be called in a write
+     * transaction.
+     */
+    public static void recordStroke(Realm realm, String author, String strokeId, long generation) {
+        record(realm, author, StrokeOperation.TYPE_ADD_STROKE, strokeId, generation);
+    }
+
+    /**
+     * Records that {@code author} wiped the canvas, which ends the history before it. Must be
+     * called in a write transaction.
+     */
+    public static void recordWipe(Realm realm, String author, long generation) {
+        record(realm, author, StrokeOperation.TYPE_WIPE, null, generation);
+    }
+
+    /**
+     * Undoes the last operation of {@code author} that is in effect. Must be called in a write
+     * transaction.
+     *
+     * @return whether anything was undone.
+     */
+    public static boolean undo(Realm realm, String author) {
+        final UndoHistory history = find(realm, author);
+        if (history == null) {
+            return false;
+        }
+        final long generation = CanvasState.currentGeneration(realm);
+        while (history.getPosition() >= history.getFirst()) {
+            final StrokeOperation operation = operation(realm, author, history.getPosition());
+            if (operation == null || operation.getType() != StrokeOperation.TYPE_ADD_STROKE
+                    || operation.getGeneration() != generation) {
+                // History before a wipe, here or on another device, cannot be undone.
+                return false;
+            }
+            history.setPosition(history.getPosition() - 1);
+            if (moveStroke(realm, operation.getStrokeId(), generation, -generation)) {
+                return true;
+            }
+            // The stroke is gone, for example deleted by another client. Undo the one before.
+        }
+        return false;
+    }
+
+    /**
+     * Redoes the operation of {@code author} that was undone last. Must be called in a write
+     * transaction.
+     *
+     * @return whether anything was redone.
+     */
+    public static boolean redo(Realm realm, String author) {
+        final UndoHistory history = find(realm, author);
+        if (history == null) {
+            return false;
+        }
+        final long generation = CanvasState.currentGeneration(realm);
+        while (history.getPosition() < history.getEnd()) {
+            final StrokeOperation operation = operation(realm, author, history.getPosition() + 1);
+            if (operation == null || operation.getType() != StrokeOperation.TYPE_ADD_STROKE
+                    || operation.getGeneration() != generation) {
+                return false;
+            }
+            history.setPosition(history.getPosition() + 1);
+            if (moveStroke(realm, operation.getStrokeId(), -generation, generation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void record(Realm realm, String author, int type, String strokeId, long generation) {
+        UndoHistory history = find(realm, author);
+        if (history == null) {
+            history = realm.createObject(UndoHistory.class, author);
+            history.setFirst(1);
+        }
+        // Operations that were undone can no longer be redone.
+        for (long sequence = history.getPosition() + 1; sequence <= history.getEnd(); sequence++) {
+            deleteOperation(realm, author, sequence);
+        }
+        final long sequence = history.getPosition() + 1;
+        final StrokeOperation operation = realm.createObject(StrokeOperation.class,
+                StrokeOperation.keyOf(author, sequence));
+        operation.setAuthor(author);
+        operation.setSequence(sequence);
+        operation.setType(type);
+        operation.setStrokeId(strokeId);
+        operation.setGeneration(generation);
+        history.setPosition(sequence);
+        history.setEnd(sequence);
+        while (history.getEnd() - history.getFirst() >= MAX_OPERATIONS) {
+            deleteOperation(realm, author, history.getFirst());
+            history.setFirst(history.getFirst() + 1);
+        }
+    }
+
+    private static UndoHistory find(Realm realm, String author) {
+        return realm.where(UndoHistory.class).equalTo(FIELD_AUTHOR, author).findFirst();
+    }
+
+    private static StrokeOperation operation(Realm realm, String author, long sequence) {
+        return realm.where(StrokeOperation.class)
+                .equalTo(StrokeOperation.FIELD_KEY, StrokeOperation.keyOf(author, sequence))
+                .findFirst();
+    }
+
+    private static void deleteOperation(Realm realm, String author, long sequence) {
+        final StrokeOperation operation = operation(realm, author, sequence);
+        if (operation != null) {
+            operation.deleteFromRealm();
+        }
+    }
+
+    private static boolean moveStroke(Realm realm, String strokeId, long from, long to) {
+        final DrawPath path = realm.where(DrawPath.class)
+                .equalTo(DrawPath.FIELD_ID, strokeId)
+                .equalTo(DrawPath.FIELD_GENERATION, from)
+                .findFirst();
+        if (path == null) {
+            return false;
+        }
+        path.setGeneration(to);
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import io.realm.RealmResults;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.PathPoints;
+
+/**
+ * A rasterized copy of the committed layer together with keys of the completed strokes it
+ * contains, so a cold start can show the canvas right away and only draw strokes that are not in
+ * the image yet.
+ * <p>
+ * A snapshot is only valid for the surface size and transform it was taken with. Strokes are
+ * identified by their id, or for clients that do not write ids, by their color, point count and
+ * bounds, which do not change once a stroke is completed.
+ * <p>
+ * The keys and the image are stored in one file that is replaced atomically, so a snapshot being
+ * saved by one draw thread is never read half written by the next one.
+ */
+public class CanvasSnapshot {
+    private static final String TAG = "CanvasSnapshot";
+    // Changes whenever strokes are drawn differently, so older snapshots are not used.
+    private static final int VERSION = 3;
+    private static final String FILE = "canvas-snapshot";
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Bitmap bitmap;
+    private final long[] keys;
+    private final double ratio;
+    private final double marginLeft;
+    private final double marginTop;
+
+    private CanvasSnapshot(Bitmap bitmap, long[] keys, double ratio, double marginLeft, double marginTop) {
+        this.bitmap = bitmap;
+        this.keys = keys;
+        this.ratio = ratio;
+        this.marginLeft = marginLeft;
+        this.marginTop = marginTop;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    /**
+     * Number of strokes in the snapshot.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean contains(long key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    public boolean matches(int width, int height, double ratio, double marginLeft, double marginTop) {
+        return bitmap.getWidth() == width && bitmap.getHeight() == height
+                && this.ratio == ratio && this.marginLeft == marginLeft && this.marginTop == marginTop;
+    }
+
+    public void recycle() {
+        bitmap.recycle();
+    }
+
+    /**
+     * Returns the key of a completed stroke whose bounds are {@code bounds}.
+     */
+    public static long keyOf(DrawPath path, Bounds bounds) {
+        final String id = path.getId();
+        if (id != null) {
+            return hash(FNV_OFFSET, id);
+        }
+        long hash = hash(FNV_OFFSET, path.getColor());
+        hash = hash(hash, PathPoints.count(path));
+        hash = hash(hash, Float.floatToIntBits(bounds.left));
+        hash = hash(hash, Float.floatToIntBits(bounds.top));
+        hash = hash(hash, Float.floatToIntBits(bounds.right));
+        return hash(hash, Float.floatToIntBits(bounds.bottom));
+    }
+
+    /**
+     * Loads the snapshot in {@code directory} if there is one for this surface size and transform.
+     */
+    public static CanvasSnapshot load(File directory, int width, int height, double ratio, double marginLeft,
+                                      double marginTop) {
+        final File file = new File(directory, FILE);
+        if (!file.exists()) {
+            return null;
+        }
+
+        final long[] keys;
+        final Bitmap bitmap;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION
+                    || in.readInt() != width || in.readInt() != height
+                    || in.readDouble() != ratio || in.readDouble() != marginLeft || in.readDouble() != marginTop) {
+                return null;
+            }
+            keys = new long[in.readInt()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = in.readLong();
+            }
+            // The image follows the keys.
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read canvas snapshot", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            return null;
+        }
+        return new CanvasSnapshot(bitmap, keys, ratio, marginLeft, marginTop);
+    }
+
+    /**
+     * Saves {@code layer}, which must contain exactly the completed strokes of {@code results}.
+     */
+    public static void save(File directory, Bitmap layer, RealmResults<DrawPath> results, double ratio,
+                            double marginLeft, double marginTop) {
+        final Bounds bounds = new Bounds();
+        long[] keys = new long[results.size()];
+        int count = 0;
+        for (int i = 0; i < results.size(); i++) {
+            final DrawPath path = results.get(i);
+            if (path.isCompleted()) {
+                PathPoints.bounds(path, bounds);
+                keys[count++] = keyOf(path, bounds);
+            }
+        }
+        keys = Arrays.copyOf(keys, count);
+        Arrays.sort(keys);
+
+        final File file = new File(directory, FILE);
+        final File temp = new File(directory, FILE + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(VERSION);
+            out.writeInt(layer.getWidth());
+            out.writeInt(layer.getHeight());
+            out.writeDouble(ratio);
+            out.writeDouble(marginLeft);
+            out.writeDouble(marginTop);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                out.writeLong(key);
+            }
+            if (!layer.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Failed to encode snapshot");
+            }
+            out.close();
+            out = null;
+
+            // Renaming replaces the previous snapshot in one step.
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to move snapshot into place");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save canvas snapshot", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash(hash, -1);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.metrics.Histogram;
+
+/**
+ * Draws a summary of {@link DrawMetrics} and the {@link RenderScheduler} counters over the canvas.
+ * The text is refreshed at most twice a second, so it stays readable and cheap to draw.
+ */
+public class MetricsOverlay {
+    private static final long REFRESH_INTERVAL_MILLIS = 500;
+    private static final float TEXT_SIZE = 28;
+    private static final float PADDING = 12;
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final String[] lines = new String[6];
+    private long lastRefreshMillis;
+
+    public MetricsOverlay() {
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(TEXT_SIZE);
+        backgroundPaint.setColor(0xB0000000);
+    }
+
+    public void draw(Canvas canvas, DrawMetrics metrics, RenderScheduler scheduler, StrokeRenderer renderer) {
+        final long now = SystemClock.uptimeMillis();
+        if (lines[0] == null || now - lastRefreshMillis >= REFRESH_INTERVAL_MILLIS) {
+            lastRefreshMillis = now;
+            lines[0] = "frame " + summary(metrics.frameTime) + ", dropped " + scheduler.getDroppedFrames();
+            lines[1] = "touch->frame " + summary(metrics.touchToFrame) + ", input->commit " + summary(metrics.inputToCommit);
+            lines[2] = "commit " + summary(metrics.commitDuration) + ", upload " + summary(metrics.syncUpload);
+            lines[3] = "local->frame " + summary(metrics.localCommitToFrame);
+            lines[4] = "remote->frame " + summary(metrics.remoteChangeToFrame);
+            lines[5] = "last frame " + renderer.getLastFramePaths() + " paths, " + renderer.getLastFramePoints() + " points";
+        }
+
+        final float lineHeight = TEXT_SIZE * 1.2f;
+        float width = 0;
+        for (String line : lines) {
+            width = Math.max(width, textPaint.measureText(line));
+        }
+        canvas.drawRect(0, 0, width + PADDING * 2, lineHeight * lines.length + PADDING * 2, backgroundPaint);
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], PADDING, PADDING + lineHeight * (i + 1) - (lineHeight - TEXT_SIZE), textPaint);
+        }
+    }
+
+    // Durations are recorded in microseconds and shown in milliseconds.
+    private static String summary(Histogram histogram) {
+        return String.format(Locale.US, "p50 %.1f p99 %.1f ms", histogram.getValueAtPercentile(50) / 1000f,
+                histogram.getValueAtPercentile(99) / 1000f);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Paint;
+
+import io.realm.draw.models.Palette;
+
+/**
+ * One stroke {@link Paint} per {@link Palette} color, indexed by color id, with round caps and
+ * joins. The paints are only touched again when the stroke width changes.
+ */
+public class PaintPalette {
+    private final Paint[] paints = new Paint[Palette.size()];
+    private float strokeWidth = -1;
+
+    public PaintPalette() {
+        for (int id = Palette.DEFAULT_ID; id < paints.length; id++) {
+            final Paint paint = new Paint();
+            paint.setStyle(Paint.Style.STROKE);
+            // Round caps draw the zero length segment of a tap as a dot, and round joins keep
+            // sharp turns from spiking, like the exporters.
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            paint.setStrokeJoin(Paint.Join.ROUND);
+            paint.setColor(Palette.colorOf(id));
+            paints[id] = paint;
+        }
+    }
+
+    public void setStrokeWidth(float strokeWidth) {
+        if (strokeWidth == this.strokeWidth) {
+            return;
+        }
+        this.strokeWidth = strokeWidth;
+        for (int id = Palette.DEFAULT_ID; id < paints.length; id++) {
+            paints[id].setStrokeWidth(strokeWidth);
+        }
+    }
+
+    /**
+     * Returns the paint of a color id returned by {@link Palette#resolve}.
+     */
+    public Paint get(int colorId) {
+        return paints[colorId];
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules frames of a render thread in step with the display. Any number of
+ * {@link #requestFrame()} calls between two frames result in a single frame, frames are never
+ * rendered more often than {@code maxFps}, and nothing is scheduled while no frame is requested.
+ * <p>
+ * Uses {@link Choreographer} where available; before Jelly Bean frames are timed with a
+ * {@link Handler} instead. Must be created and used on a thread with a Looper.
+ * <p>
+ * The counters may be read from any thread.
+ */
+public class RenderScheduler {
+    public static final int DEFAULT_MAX_FPS = 60;
+
+    /**
+     * Renders a frame. Called on the thread that created the scheduler.
+     */
+    public interface Callback {
+        void onFrame(long frameTimeNanos);
+    }
+
+    private final Callback callback;
+    private final long vsyncPeriodNanos;
+    private final long minFrameIntervalNanos;
+    private final Handler handler = new Handler();
+    private final Object frameCallback;
+
+    private boolean frameRequested;
+    private boolean frameScheduled;
+    private long lastFrameTimeNanos;
+
+    private volatile long frameCount;
+    private volatile long droppedFrames;
+    private volatile long coalescedRequests;
+    private volatile long lastFrameDurationNanos;
+    private volatile long maxFrameDurationNanos;
+    private volatile long totalFrameDurationNanos;
+
+    private final Runnable handlerFrame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame(System.nanoTime());
+        }
+    };
+
+    /**
+     * @param refreshRate refresh rate of the display, in frames per second.
+     * @param maxFps highest rate at which frames are rendered.
+     */
+    public RenderScheduler(Callback callback, float refreshRate, int maxFps) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("maxFps must be positive: " + maxFps);
+        }
+        this.callback = callback;
+        this.vsyncPeriodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / (refreshRate > 0 ? refreshRate : 60));
+        // Half a vsync of slack, so a cap equal to the refresh rate does not skip every other vsync.
+        this.minFrameIntervalNanos = Math.max(0, TimeUnit.SECONDS.toNanos(1) / maxFps - vsyncPeriodNanos / 2);
+        this.frameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? createFrameCallback() : null;
+    }
+
+    /**
+     * Requests a frame. Requests made before the next frame is rendered are merged into it.
+     */
+    public void requestFrame() {
+        if (frameRequested) {
+            coalescedRequests++;
+            return;
+        }
+        frameRequested = true;
+        schedule();
+    }
+
+    /**
+     * Cancels any pending frame. Later requests schedule frames again.
+     */
+    public void stop() {
+        frameRequested = false;
+        if (frameScheduled) {
+            frameScheduled = false;
+            if (frameCallback != null) {
+                removeFrameCallback();
+            } else {
+                handler.removeCallbacks(handlerFrame);
+            }
+        }
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Number of display refreshes missed because a frame took longer than one refresh period.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Number of frame requests that were merged into an already requested frame.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests;
+    }
+
+    public long getLastFrameDurationNanos() {
+        return lastFrameDurationNanos;
+    }
+
+    public long getMaxFrameDurationNanos() {
+        return maxFrameDurationNanos;
+    }
+
+    public long getAverageFrameDurationNanos() {
+        final long frames = frameCount;
+        return frames == 0 ? 0 : totalFrameDurationNanos / frames;
+    }
+
+    private void schedule() {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        if (frameCallback != null) {
+            postFrameCallback();
+        } else {
+            final long wait = lastFrameTimeNanos + minFrameIntervalNanos - System.nanoTime();
+            handler.postDelayed(handlerFrame, Math.max(0, TimeUnit.NANOSECONDS.toMillis(wait)));
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!frameRequested) {
+            return;
+        }
+        if (frameTimeNanos - lastFrameTimeNanos < minFrameIntervalNanos) {
+            schedule();
+            return;
+        }
+        frameRequested = false;
+        lastFrameTimeNanos = frameTimeNanos;
+
+        final long start = System.nanoTime();
+        callback.onFrame(frameTimeNanos);
+        final long end = System.nanoTime();
+
+        final long duration = end - start;
+        lastFrameDurationNanos = duration;
+        totalFrameDurationNanos += duration;
+        if (duration > maxFrameDurationNanos) {
+            maxFrameDurationNanos = duration;
+        }
+        droppedFrames += (end - frameTimeNanos) / vsyncPeriodNanos;
+        frameCount++;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Object createFrameCallback() {
+        return new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                RenderScheduler.this.doFrame(frameTimeNanos);
+            }
+        };
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+    }
+}
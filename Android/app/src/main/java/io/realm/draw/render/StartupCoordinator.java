@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Lets the render thread block until the surface has been sized and the Realm has been opened,
+ * and records how long it took to open the Realm, get the first frame on screen and accept the
+ * first stroke.
+ * <p>
+ * Waiting threads are released by interrupting them, which is how a render thread is cancelled
+ * when its surface is destroyed.
+ */
+public class StartupCoordinator {
+    private static final String TAG = "StartupCoordinator";
+
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private final long createdAtCpuTime = Process.getElapsedCpuTime();
+    private boolean surfaceReady;
+    private boolean realmReady;
+    private long timeToRealm = -1;
+    private long timeToFirstFrame = -1;
+    private long timeToFirstStroke = -1;
+    private long startupCpuTime = -1;
+    private long renderThreadStartupCpuTime = -1;
+
+    public synchronized void onSurfaceReady() {
+        surfaceReady = true;
+        notifyAll();
+    }
+
+    public synchronized void onSurfaceLost() {
+        surfaceReady = false;
+    }
+
+    public synchronized void onRealmReady() {
+        realmReady = true;
+        if (timeToRealm < 0) {
+            timeToRealm = SystemClock.elapsedRealtime() - createdAt;
+            Log.i(TAG, "Realm opened after " + timeToRealm + " ms");
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records the time to the first stroke the first time it is called.
+     */
+    public synchronized void onFirstStroke() {
+        if (timeToFirstStroke >= 0) {
+            return;
+        }
+        timeToFirstStroke = SystemClock.elapsedRealtime() - createdAt;
+        Log.i(TAG, "First stroke after " + timeToFirstStroke + " ms");
+    }
+
+    /**
+     * Blocks until the surface geometry is known.
+     *
+     * @throws InterruptedException if the calling thread is cancelled while waiting.
+     */
+    public synchronized void awaitSurface() throws InterruptedException {
+        while (!surfaceReady) {
+            wait();
+        }
+    }
+
+    /**
+     * Blocks until the Realm has been opened.
+     *
+     * @throws InterruptedException if the calling thread is cancelled while waiting.
+     */
+    public synchronized void awaitRealm() throws InterruptedException {
+        while (!realmReady) {
+            wait();
+        }
+    }
+
+    /**
+     * Records the startup metrics the first time it is called.
+     *
+     * @param renderThreadCpuTime CPU time in milliseconds the render thread used to produce the frame.
+     */
+    public synchronized void onFirstFrame(long renderThreadCpuTime) {
+        if (timeToFirstFrame >= 0) {
+            return;
+        }
+        timeToFirstFrame = SystemClock.elapsedRealtime() - createdAt;
+        startupCpuTime = Process.getElapsedCpuTime() - createdAtCpuTime;
+        renderThreadStartupCpuTime = renderThreadCpuTime;
+        Log.i(TAG, "First frame after " + timeToFirstFrame + " ms, process CPU " + startupCpuTime
+                + " ms, render thread CPU " + renderThreadStartupCpuTime + " ms");
+    }
+
+    /**
+     * @return milliseconds from creation until the Realm was opened, or -1 if it is not open yet.
+     */
+    public synchronized long getTimeToRealm() {
+        return timeToRealm;
+    }
+
+    /**
+     * @return milliseconds from creation to the first stroke, or -1 if nothing was drawn yet.
+     */
+    public synchronized long getTimeToFirstStroke() {
+        return timeToFirstStroke;
+    }
+
+    /**
+     * @return milliseconds from creation to the first frame, or -1 if no frame has been drawn yet.
+     */
+    public synchronized long getTimeToFirstFrame() {
+        return timeToFirstFrame;
+    }
+
+    /**
+     * @return process CPU milliseconds from creation to the first frame, or -1 if no frame has been drawn yet.
+     */
+    public synchronized long getStartupCpuTime() {
+        return startupCpuTime;
+    }
+
+    /**
+     * @return render thread CPU milliseconds spent before the first frame, or -1 if no frame has been drawn yet.
+     */
+    public synchronized long getRenderThreadStartupCpuTime() {
+        return renderThreadStartupCpuTime;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Path;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.StrokePathBuilder;
+import io.realm.draw.geometry.StrokeSmoother;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.PointCursor;
+
+/**
+ * Screen space {@link Path}s of strokes, so a stroke that grows only has its new points
+ * transformed and appended.
+ * <p>
+ * Entries are keyed by an object the caller keeps for each stroke. Keys are compared with
+ * {@code equals()}, so they should be compared by identity: managed Realm objects are not suitable,
+ * since their equality is their row, which moves when objects are deleted, and computing it
+ * allocates. The cache must be cleared when the transform changes, which
+ * {@link #setTransform(double, double, double)} does. The least recently used paths are evicted
+ * once the cached point count exceeds the budget.
+ * <p>
+ * Paths are built by a {@link StrokePathBuilder} at a level of detail that matches the current
+ * scale: a point closer than {@code minSegmentLength} pixels to the previous vertex is skipped, so
+ * the drawn path never deviates from the stroke by more than that distance. The remaining vertices
+ * are joined by a {@link StrokeSmoother}, so strokes are drawn as smooth curves rather than
+ * polylines.
+ * <p>
+ * Strokes are read with a {@link PointCursor}, so a growing stroke only has its new storage blocks
+ * read, and a completed stroke is not read again at all. Evicted entries keep their {@link Path}
+ * and are reused, so a frame that only draws cached and growing strokes does not allocate.
+ */
+public class StrokeGeometryCache {
+    public static final int DEFAULT_MAX_POINTS = 250000;
+    public static final float DEFAULT_MIN_SEGMENT_LENGTH = 1f;
+
+    // Evicted entries kept for reuse.
+    private static final int MAX_FREE_ENTRIES = 256;
+
+    private static class Entry {
+        final Path path = new Path();
+        final PointCursor cursor = new PointCursor();
+        final Bounds bounds = new Bounds();
+        final StrokePathBuilder builder;
+        // Completed strokes do not change, so their path is final.
+        boolean completed;
+
+        Entry(float minSegmentLength) {
+            builder = new StrokePathBuilder(minSegmentLength);
+        }
+
+        void reset() {
+            path.rewind();
+            cursor.reset();
+            bounds.setEmpty();
+            completed = false;
+        }
+    }
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Entry> freeEntries = new ArrayList<>();
+    private final PathSink sink = new PathSink();
+    private final int maxPoints;
+    private final float minSegmentLength;
+    private int cachedPoints;
+    private int lastPointCount;
+    private Bounds lastBounds;
+    private float[] points = new float[0];
+    private double ratio = -1;
+    private double marginLeft;
+    private double marginTop;
+
+    /**
+     * @param maxPoints number of points after which least recently used paths are evicted.
+     * @param minSegmentLength shortest segment in pixels that is drawn, or 0 to draw every point.
+     */
+    public StrokeGeometryCache(int maxPoints, float minSegmentLength) {
+        this.maxPoints = maxPoints;
+        this.minSegmentLength = minSegmentLength;
+    }
+
+    public void setTransform(double ratio, double marginLeft, double marginTop) {
+        if (ratio != this.ratio || marginLeft != this.marginLeft || marginTop != this.marginTop) {
+            this.ratio = ratio;
+            this.marginLeft = marginLeft;
+            this.marginTop = marginTop;
+            clear();
+        }
+    }
+
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            free(entry);
+        }
+        entries.clear();
+        cachedPoints = 0;
+    }
+
+    public int getCachedPoints() {
+        return cachedPoints;
+    }
+
+    /**
+     * Forgets the path of the stroke {@code key}, for example because it was deleted.
+     */
+    public void remove(Object key) {
+        final Entry entry = entries.remove(key);
+        if (entry != null) {
+            cachedPoints -= entry.cursor.getPosition();
+            free(entry);
+        }
+    }
+
+    /**
+     * Number of stroke points in the path returned by the last call to {@link #get(Object, DrawPath)}.
+     */
+    public int getLastPointCount() {
+        return lastPointCount;
+    }
+
+    /**
+     * Canvas space bounds of the points in the path returned by the last call to
+     * {@link #get(Object, DrawPath)}. Owned by the cache and must not be modified.
+     */
+    public Bounds getLastBounds() {
+        return lastBounds;
+    }
+
+    /**
+     * Returns the screen space path of {@code drawPath}, extended with any points appended since
+     * the last call with the same {@code key}. The returned path is owned by the cache and must
+     * not be modified.
+     */
+    public Path get(Object key, DrawPath drawPath) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = obtain();
+            entries.put(key, entry);
+        }
+
+        if (!entry.completed) {
+            if (entry.cursor.isStale(drawPath)) {
+                cachedPoints -= entry.cursor.getPosition();
+                entry.reset();
+            }
+            // Read the flag first, so points added after it was read are picked up next time.
+            final boolean completed = drawPath.isCompleted();
+            final int previousCount = entry.cursor.getPosition();
+            points = entry.cursor.readNew(drawPath, points);
+            final int newPoints = entry.cursor.getLastCount();
+            if (newPoints > 0) {
+                append(entry, previousCount == 0, newPoints);
+                evict();
+            }
+            if (completed) {
+                sink.path = entry.path;
+                entry.builder.finish(sink);
+            }
+            entry.completed = completed;
+        }
+        lastPointCount = entry.cursor.getPosition();
+        lastBounds = entry.bounds;
+        return entry.path;
+    }
+
+    private Entry obtain() {
+        final int last = freeEntries.size() - 1;
+        return last >= 0 ? freeEntries.remove(last) : new Entry(minSegmentLength);
+    }
+
+    private void free(Entry entry) {
+        if (freeEntries.size() < MAX_FREE_ENTRIES) {
+            entry.reset();
+            freeEntries.add(entry);
+        }
+    }
+
+    private void append(Entry entry, boolean first, int newPoints) {
+        entry.bounds.union(points, newPoints);
+        sink.path = entry.path;
+        if (first) {
+            entry.builder.reset(ratio, marginLeft, marginTop);
+        }
+        entry.builder.add(points, 0, newPoints, sink);
+        cachedPoints += newPoints;
+    }
+
+    private static final class PathSink implements StrokeSmoother.Sink {
+        Path path;
+
+        @Override
+        public void moveTo(float x, float y) {
+            path.moveTo(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            path.lineTo(x, y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            path.quadTo(controlX, controlY, x, y);
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        // The most recently used entry is last and is never evicted.
+        while (cachedPoints > maxPoints && entries.size() > 1 && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            cachedPoints -= entry.cursor.getPosition();
+            iterator.remove();
+            free(entry);
+        }
+    }
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.OrderedCollectionChangeSet;
+import io.realm.RealmResults;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.SpatialGrid;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.Palette;
+import io.realm.draw.models.PathPoints;
+
+/**
+ * Draws the canvas incrementally. Completed strokes are drawn once into an offscreen layer, and
+ * only strokes that are still open are drawn again on every frame.
+ * <p>
+ * The layer is composed from the tiles of a {@link TileCache}. Every tile has a version derived
+ * from the strokes touching it, so when the surface changes or strokes are deleted, only tiles
+ * whose strokes changed are rasterized again. Strokes completed later are drawn into the layer
+ * and into the cached tiles they touch. Strokes that leave the results, for example by an undo,
+ * only refresh the tiles they touched, which are rebuilt from a checkpoint of the tile where
+ * possible rather than from all of their strokes. A stroke that comes back below strokes painted
+ * after it, for example by a redo, keeps its place in the paint order, and the tiles it touches
+ * are rasterized again.
+ * <p>
+ * Strokes are kept in a {@link SpatialGrid} by their bounds, and only strokes that intersect the
+ * part of the canvas visible on the surface are drawn.
+ * <p>
+ * Changes only update the bookkeeping; strokes completed since the last frame are drawn into the
+ * layer by the next {@link #render(Canvas, RealmResults)}, so a burst of changes costs one frame.
+ * <p>
+ * Indexing, rasterizing tiles and drawing completed strokes is limited to a time budget per
+ * frame, so a large canvas is loaded over several frames while open strokes keep being drawn on
+ * every frame. Callers render another frame as long as {@link #hasPendingWork()} returns
+ * {@code true}. A {@link CanvasSnapshot} passed to {@link #restore(CanvasSnapshot)} seeds the
+ * layer, and only strokes that are not in it are drawn.
+ */
+public class StrokeRenderer {
+    private static final float STROKE_WIDTH = 4;
+    private static final int GRID_CELLS_PER_SIDE = 32;
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+    // Strokes handled between two checks of the frame budget.
+    private static final int BUDGET_CHECK_INTERVAL = 16;
+    // Strokes drawn into a cached tile after which it is checkpointed again.
+    private static final int CHECKPOINT_INTERVAL = 16;
+    // Distance between the paint orders of strokes that are indexed one after the other.
+    private static final long ORDER_SPACING = 1L << 20;
+
+    /**
+     * A stroke of the results, at the same position as in the results. Compared by identity, since
+     * the equality of Realm objects changes when rows are moved by deletions. Also the key of its
+     * path in the {@link StrokeGeometryCache}.
+     */
+    private static final class IndexedPath {
+        final DrawPath path;
+        final Bounds bounds = new Bounds();
+        // Mixed key of the stroke, once it is part of the tile versions.
+        long key;
+        boolean versioned;
+        // Order in which strokes became part of the tile versions, to compare with checkpoints.
+        long stamp;
+        // Paint order, which follows the results. Spaced out, so strokes inserted later fit in.
+        long order;
+
+        IndexedPath(DrawPath path) {
+            this.path = path;
+        }
+    }
+
+    private final List<IndexedPath> openPaths = new ArrayList<>();
+    private final Set<IndexedPath> pendingPaths = new LinkedHashSet<>();
+    private final List<IndexedPath> indexedPaths = new ArrayList<>();
+    private final StrokeGeometryCache geometryCache;
+    private final TileCache tileCache;
+    private final float canvasSize;
+    private final PaintPalette paints = new PaintPalette();
+    private final SpatialGrid<IndexedPath> index;
+    private final List<IndexedPath> visiblePaths = new ArrayList<>();
+    private final Bounds viewport = new Bounds();
+    private final Bounds tileBounds = new Bounds();
+    private final Bounds overlapBounds = new Bounds();
+    private final Canvas tileCanvas = new Canvas();
+
+    private Bitmap committedLayer;
+    private Canvas committedCanvas;
+    private boolean layerValid;
+    private boolean indexValid;
+    private int indexPosition;
+    private CanvasSnapshot snapshot;
+    private CanvasSnapshot restoredSnapshot;
+    private int restoredPaths;
+    private double ratio = -1;
+    private double marginLeft;
+    private double marginTop;
+    private int framePaths;
+    private int framePoints;
+
+    // Tile versions for the current scale, row by row. Version 0 is a tile without strokes.
+    private long[] tileVersions = new long[0];
+    private int tileColumns;
+    private double tileScale = -1;
+    private long nextStamp = 1;
+    private int[] tileUpdates = new int[0];
+    private int[] tileQueue = new int[0];
+    private boolean[] tileQueued = new boolean[0];
+    private int tileQueueStart;
+    private int tileQueueEnd;
+    // Tiles whose strokes were removed by the current change.
+    private int[] changedTiles = new int[0];
+    private boolean[] tileChanged = new boolean[0];
+    private int changedTileCount;
+
+    /**
+     * @param tileCache tiles of the committed canvas, which may outlive this renderer.
+     * @param canvasSize width and height of the canvas, in canvas units.
+     */
+    public StrokeRenderer(StrokeGeometryCache geometryCache, TileCache tileCache, float canvasSize) {
+        this.geometryCache = geometryCache;
+        this.tileCache = tileCache;
+        this.canvasSize = canvasSize;
+        this.index = new SpatialGrid<>(canvasSize, GRID_CELLS_PER_SIDE);
+    }
+
+    public void setTransform(double ratio, double marginLeft, double marginTop) {
+        if (ratio != this.ratio || marginLeft != this.marginLeft || marginTop != this.marginTop) {
+            this.ratio = ratio;
+            this.marginLeft = marginLeft;
+            this.marginTop = marginTop;
+            paints.setStrokeWidth((float) (STROKE_WIDTH / ratio));
+            geometryCache.setTransform(ratio, marginLeft, marginTop);
+            invalidate();
+        }
+    }
+
+    public void invalidate() {
+        layerValid = false;
+    }
+
+    /**
+     * Uses {@code snapshot} as the starting point of the next rebuild, if it matches the surface
+     * at that time. The renderer takes ownership of the snapshot.
+     */
+    public void restore(CanvasSnapshot snapshot) {
+        discardSnapshots();
+        this.snapshot = snapshot;
+        startIndexing();
+        invalidate();
+    }
+
+    /**
+     * Applies a change notification of {@code results}. Inserted and modified strokes are either
+     * committed to the layer or tracked as open, and removed strokes are taken out of the tiles
+     * they touched.
+     */
+    public void onChange(RealmResults<DrawPath> results, OrderedCollectionChangeSet changeSet) {
+        if (changeSet == null || (changeSet.getDeletions().length > 0 && !canRemoveIncrementally())) {
+            if (changeSet != null) {
+                // Strokes in a snapshot might be gone now.
+                discardSnapshots();
+            }
+            // The layer is kept until the index is complete again and it can be recomposed.
+            geometryCache.clear();
+            pendingPaths.clear();
+            startIndexing();
+            return;
+        }
+        final int[] deletions = changeSet.getDeletions();
+        for (int i = deletions.length - 1; i >= 0; i--) {
+            if (deletions[i] < indexedPaths.size()) {
+                remove(indexedPaths.remove(deletions[i]));
+            }
+        }
+        // While indexing, strokes that have not been reached yet are picked up later.
+        indexPosition = indexedPaths.size();
+        for (int position : changeSet.getInsertions()) {
+            if (position <= indexedPaths.size() && (indexValid || position < indexPosition)) {
+                final IndexedPath indexedPath = new IndexedPath(results.get(position));
+                indexedPath.order = orderAt(position);
+                indexedPaths.add(position, indexedPath);
+                indexPosition++;
+                accept(indexedPath, position == indexedPaths.size() - 1);
+            }
+        }
+        for (int position : changeSet.getChanges()) {
+            if (position < indexedPaths.size()) {
+                accept(indexedPaths.get(position), position == indexedPaths.size() - 1);
+            }
+        }
+        refreshChangedTiles();
+    }
+
+    public void render(Canvas canvas, RealmResults<DrawPath> results) {
+        framePaths = 0;
+        framePoints = 0;
+        final long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        if (committedLayer == null
+                || committedLayer.getWidth() != canvas.getWidth()
+                || committedLayer.getHeight() != canvas.getHeight()) {
+            releaseLayer();
+            committedLayer = Bitmap.createBitmap(canvas.getWidth(), canvas.getHeight(), Bitmap.Config.ARGB_8888);
+            committedLayer.eraseColor(Color.WHITE);
+            committedCanvas = new Canvas(committedLayer);
+            layerValid = false;
+        }
+        if (!layerValid) {
+            updateViewport(canvas.getWidth(), canvas.getHeight());
+            resetLayer();
+        }
+        if (!indexValid) {
+            continueIndexing(results, deadline);
+            if (!layerValid) {
+                resetLayer();
+            }
+        }
+        rasterizeTiles(deadline);
+        drawPendingPaths(deadline);
+
+        canvas.drawBitmap(committedLayer, 0, 0, null);
+        for (int i = 0; i < openPaths.size(); i++) {
+            final IndexedPath indexedPath = openPaths.get(i);
+            if (indexedPath.path.isValid()) {
+                drawOpenPath(canvas, indexedPath);
+            }
+        }
+    }
+
+    /**
+     * Whether completed strokes are still waiting to be drawn into the layer.
+     */
+    public boolean hasPendingWork() {
+        return !layerValid || !indexValid || tileQueueStart < tileQueueEnd || !pendingPaths.isEmpty();
+    }
+
+    /**
+     * Saves the layer as a {@link CanvasSnapshot} in {@code directory}, if it contains all
+     * completed strokes of {@code results}.
+     *
+     * @return whether a snapshot was saved.
+     */
+    public boolean saveSnapshot(File directory, RealmResults<DrawPath> results) {
+        if (committedLayer == null || hasPendingWork()) {
+            return false;
+        }
+        CanvasSnapshot.save(directory, committedLayer, results, ratio, marginLeft, marginTop);
+        return true;
+    }
+
+    /**
+     * Number of strokes drawn by the last {@link #render(Canvas, RealmResults)}.
+     */
+    public int getLastFramePaths() {
+        return framePaths;
+    }
+
+    /**
+     * Number of stroke points drawn by the last {@link #render(Canvas, RealmResults)}.
+     */
+    public int getLastFramePoints() {
+        return framePoints;
+    }
+
+    /**
+     * Releases the layer and writes changed tiles to the disk tier of the tile cache.
+     */
+    public void release() {
+        releaseLayer();
+        discardSnapshots();
+        tileCache.flush();
+    }
+
+    private void releaseLayer() {
+        if (committedLayer != null) {
+            committedLayer.recycle();
+            committedLayer = null;
+            committedCanvas = null;
+        }
+    }
+
+    private void discardSnapshots() {
+        if (snapshot != null) {
+            snapshot.recycle();
+            snapshot = null;
+        }
+        discardRestoredSnapshot();
+    }
+
+    private void discardRestoredSnapshot() {
+        if (restoredSnapshot != null) {
+            restoredSnapshot.recycle();
+            restoredSnapshot = null;
+        }
+    }
+
+    private void updateViewport(int width, int height) {
+        viewport.set((float) (-marginLeft * ratio), (float) (-marginTop * ratio),
+                (float) ((width - marginLeft) * ratio), (float) ((height - marginTop) * ratio));
+        viewport.inset(-STROKE_WIDTH / 2, -STROKE_WIDTH / 2);
+    }
+
+    private void resetLayer() {
+        pendingPaths.clear();
+        tileQueueStart = tileQueueEnd = 0;
+        Arrays.fill(tileQueued, false);
+        layerValid = true;
+
+        // A snapshot that is still being matched against the strokes is used again.
+        final CanvasSnapshot candidate = snapshot != null ? snapshot : restoredSnapshot;
+        if (candidate != null && candidate.matches(committedLayer.getWidth(), committedLayer.getHeight(),
+                ratio, marginLeft, marginTop)) {
+            committedCanvas.drawBitmap(candidate.getBitmap(), 0, 0, null);
+            if (candidate != restoredSnapshot) {
+                discardRestoredSnapshot();
+            }
+            restoredSnapshot = candidate;
+            snapshot = null;
+            startIndexing();
+            return;
+        }
+        if (restoredSnapshot != null) {
+            // Strokes found in the snapshot were not queued, so they have to be indexed again.
+            startIndexing();
+        }
+        discardSnapshots();
+        if (indexValid) {
+            compose();
+        }
+    }
+
+    private void startIndexing() {
+        index.clear();
+        indexedPaths.clear();
+        openPaths.clear();
+        indexPosition = 0;
+        restoredPaths = 0;
+        indexValid = false;
+    }
+
+    private void continueIndexing(RealmResults<DrawPath> results, long deadline) {
+        final int size = results.size();
+        while (indexPosition < size) {
+            final IndexedPath indexedPath = new IndexedPath(results.get(indexPosition++));
+            final DrawPath drawPath = indexedPath.path;
+            indexedPath.order = orderAt(indexedPaths.size());
+            indexedPaths.add(indexedPath);
+            PathPoints.bounds(drawPath, indexedPath.bounds);
+            index.put(indexedPath, indexedPath.bounds, indexedPath.order);
+            if (!drawPath.isCompleted()) {
+                openPaths.add(indexedPath);
+            } else if (restoredSnapshot != null) {
+                if (restoredSnapshot.contains(CanvasSnapshot.keyOf(drawPath, indexedPath.bounds))) {
+                    restoredPaths++;
+                } else if (indexedPath.bounds.intersects(viewport)) {
+                    pendingPaths.add(indexedPath);
+                }
+            }
+            if (indexPosition % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return;
+            }
+        }
+        indexValid = true;
+        computeTileVersions();
+
+        if (restoredSnapshot != null) {
+            if (restoredPaths != restoredSnapshot.size()) {
+                // Some strokes in the image were deleted, so it cannot be used.
+                discardRestoredSnapshot();
+                invalidate();
+            }
+            discardRestoredSnapshot();
+        } else {
+            invalidate();
+        }
+    }
+
+    private void computeTileVersions() {
+        if (ratio != tileScale) {
+            tileScale = ratio;
+            tileCache.setScale(ratio);
+            tileColumns = (int) Math.ceil(canvasSize / ratio / TileCache.TILE_SIZE);
+            tileVersions = new long[tileColumns * tileColumns];
+            tileUpdates = new int[tileVersions.length];
+            tileQueue = new int[tileVersions.length];
+            tileQueued = new boolean[tileVersions.length];
+            changedTiles = new int[tileVersions.length];
+            tileChanged = new boolean[tileVersions.length];
+        } else {
+            Arrays.fill(tileVersions, 0);
+        }
+        for (int i = 0; i < indexedPaths.size(); i++) {
+            final IndexedPath indexedPath = indexedPaths.get(i);
+            indexedPath.versioned = false;
+            addTileVersion(indexedPath, false);
+        }
+    }
+
+    /**
+     * Mixes the key of a completed stroke into the versions of the tiles it touches, unless that
+     * was done before. With {@code drawIntoTiles}, the stroke is also drawn into cached tiles
+     * that were up to date, so they stay valid.
+     */
+    private void addTileVersion(IndexedPath indexedPath, boolean drawIntoTiles) {
+        if (!indexedPath.path.isCompleted() || indexedPath.versioned) {
+            return;
+        }
+        // Versions are combined with xor, so they do not depend on the order strokes are added in.
+        indexedPath.key = mix(CanvasSnapshot.keyOf(indexedPath.path, indexedPath.bounds));
+        indexedPath.versioned = true;
+        if (indexedPath.stamp == 0) {
+            indexedPath.stamp = nextStamp++;
+        }
+        final Bounds bounds = indexedPath.bounds;
+        final int left = tileOf(bounds.left - STROKE_WIDTH / 2);
+        final int top = tileOf(bounds.top - STROKE_WIDTH / 2);
+        final int right = tileOf(bounds.right + STROKE_WIDTH / 2);
+        final int bottom = tileOf(bounds.bottom + STROKE_WIDTH / 2);
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                final int tile = row * tileColumns + column;
+                final long version = tileVersions[tile] ^ indexedPath.key;
+                final Bitmap bitmap = drawIntoTiles ? tileCache.update(column, row, tileVersions[tile], version) : null;
+                if (bitmap != null) {
+                    tileCanvas.setBitmap(bitmap);
+                    tileCanvas.save();
+                    tileCanvas.translate(-tileLeft(column), -tileTop(row));
+                    drawPath(tileCanvas, indexedPath);
+                    tileCanvas.restore();
+                    if (++tileUpdates[tile] >= CHECKPOINT_INTERVAL) {
+                        tileUpdates[tile] = 0;
+                        tileCache.checkpoint(column, row, version, nextStamp - 1, bitmap);
+                    }
+                }
+                tileVersions[tile] = version;
+            }
+        }
+    }
+
+    /**
+     * Takes the key of a removed stroke out of the versions of the tiles it touched, which are
+     * refreshed by {@link #refreshChangedTiles()}.
+     */
+    private void removeTileVersion(IndexedPath indexedPath) {
+        if (!indexedPath.versioned) {
+            return;
+        }
+        indexedPath.versioned = false;
+        final Bounds bounds = indexedPath.bounds;
+        final int left = tileOf(bounds.left - STROKE_WIDTH / 2);
+        final int top = tileOf(bounds.top - STROKE_WIDTH / 2);
+        final int right = tileOf(bounds.right + STROKE_WIDTH / 2);
+        final int bottom = tileOf(bounds.bottom + STROKE_WIDTH / 2);
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                tileVersions[row * tileColumns + column] ^= indexedPath.key;
+            }
+        }
+        markTilesChanged(indexedPath);
+    }
+
+    /**
+     * Marks the tiles a stroke touches to be refreshed by {@link #refreshChangedTiles()}.
+     */
+    private void markTilesChanged(IndexedPath indexedPath) {
+        final Bounds bounds = indexedPath.bounds;
+        final int left = tileOf(bounds.left - STROKE_WIDTH / 2);
+        final int top = tileOf(bounds.top - STROKE_WIDTH / 2);
+        final int right = tileOf(bounds.right + STROKE_WIDTH / 2);
+        final int bottom = tileOf(bounds.bottom + STROKE_WIDTH / 2);
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                final int tile = row * tileColumns + column;
+                if (!tileChanged[tile]) {
+                    tileChanged[tile] = true;
+                    changedTiles[changedTileCount++] = tile;
+                }
+            }
+        }
+    }
+
+    // A removed stroke can be taken out of the tiles it touched as long as the tile versions are
+    // known, and no snapshot that might contain it is still being matched.
+    private boolean canRemoveIncrementally() {
+        return snapshot == null && restoredSnapshot == null && (!indexValid || ratio == tileScale);
+    }
+
+    /**
+     * Removes a stroke that left the results from the index.
+     */
+    private void remove(IndexedPath indexedPath) {
+        index.remove(indexedPath);
+        pendingPaths.remove(indexedPath);
+        geometryCache.remove(indexedPath);
+        if (indexValid) {
+            removeTileVersion(indexedPath);
+        }
+        openPaths.remove(indexedPath);
+    }
+
+    /**
+     * Draws the cached version of tiles that strokes were removed from into the layer, or queues
+     * them to be rasterized.
+     */
+    private void refreshChangedTiles() {
+        for (int i = 0; i < changedTileCount; i++) {
+            final int tile = changedTiles[i];
+            tileChanged[tile] = false;
+            if (!layerValid || committedCanvas == null) {
+                continue;
+            }
+            final int column = tile % tileColumns;
+            final int row = tile / tileColumns;
+            if (column < tileOf(viewport.left) || column > tileOf(viewport.right)
+                    || row < tileOf(viewport.top) || row > tileOf(viewport.bottom)) {
+                continue;
+            }
+            final long version = tileVersions[tile];
+            final Bitmap bitmap = version != 0 ? tileCache.get(column, row, version) : null;
+            if (bitmap != null) {
+                committedCanvas.drawBitmap(bitmap, tileLeft(column), tileTop(row), null);
+            } else if (version == 0) {
+                final float left = tileLeft(column);
+                final float top = tileTop(row);
+                committedCanvas.save();
+                committedCanvas.clipRect(left, top, left + TileCache.TILE_SIZE, top + TileCache.TILE_SIZE);
+                committedCanvas.drawColor(Color.WHITE);
+                committedCanvas.restore();
+            } else {
+                queueTile(tile);
+            }
+        }
+        changedTileCount = 0;
+    }
+
+    private void queueTile(int tile) {
+        if (!tileQueued[tile]) {
+            tileQueued[tile] = true;
+            tileQueue[tileQueueEnd++] = tile;
+        }
+    }
+
+    private void compose() {
+        committedCanvas.drawColor(Color.WHITE);
+        if (ratio != tileScale) {
+            computeTileVersions();
+        }
+        final int left = tileOf(viewport.left);
+        final int top = tileOf(viewport.top);
+        final int right = tileOf(viewport.right);
+        final int bottom = tileOf(viewport.bottom);
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                final int tile = row * tileColumns + column;
+                final long version = tileVersions[tile];
+                if (version == 0) {
+                    continue;
+                }
+                final Bitmap bitmap = tileCache.get(column, row, version);
+                if (bitmap != null) {
+                    committedCanvas.drawBitmap(bitmap, tileLeft(column), tileTop(row), null);
+                } else {
+                    queueTile(tile);
+                }
+            }
+        }
+    }
+
+    private void rasterizeTiles(long deadline) {
+        while (tileQueueStart < tileQueueEnd && System.nanoTime() < deadline) {
+            final int tile = tileQueue[tileQueueStart++];
+            tileQueued[tile] = false;
+            final int column = tile % tileColumns;
+            final int row = tile / tileColumns;
+            final float size = (float) (TileCache.TILE_SIZE * ratio);
+            tileBounds.set(column * size, row * size, (column + 1) * size, (row + 1) * size);
+            tileBounds.inset(-STROKE_WIDTH / 2, -STROKE_WIDTH / 2);
+            index.query(tileBounds, visiblePaths);
+
+            // A checkpoint is used if the strokes added after it make up the current version,
+            // which also means none of the strokes in it were removed since, and are painted
+            // after all strokes in it.
+            final TileCache.Checkpoint checkpoint = tileCache.getCheckpoint(column, row);
+            long since = 0;
+            if (checkpoint != null) {
+                long version = checkpoint.getVersion();
+                boolean added = false;
+                boolean inOrder = true;
+                for (int i = 0; i < visiblePaths.size(); i++) {
+                    final IndexedPath indexedPath = visiblePaths.get(i);
+                    if (!indexedPath.versioned) {
+                        continue;
+                    }
+                    if (indexedPath.stamp > checkpoint.getStamp()) {
+                        version ^= indexedPath.key;
+                        added = true;
+                    } else if (added) {
+                        inOrder = false;
+                    }
+                }
+                if (inOrder && version == tileVersions[tile]) {
+                    since = checkpoint.getStamp();
+                }
+            }
+
+            final Bitmap bitmap = tileCache.obtain();
+            tileCanvas.setBitmap(bitmap);
+            if (since != 0) {
+                tileCanvas.drawBitmap(checkpoint.getBitmap(), 0, 0, null);
+            } else {
+                bitmap.eraseColor(Color.WHITE);
+            }
+            tileCanvas.save();
+            tileCanvas.translate(-tileLeft(column), -tileTop(row));
+            for (int i = 0; i < visiblePaths.size(); i++) {
+                final IndexedPath indexedPath = visiblePaths.get(i);
+                if (indexedPath.path.isCompleted() && (since == 0 || indexedPath.stamp > since)) {
+                    drawPath(tileCanvas, indexedPath);
+                }
+            }
+            visiblePaths.clear();
+            tileCanvas.restore();
+
+            tileCache.put(column, row, tileVersions[tile], bitmap);
+            if (since == 0) {
+                tileUpdates[tile] = 0;
+                tileCache.checkpoint(column, row, tileVersions[tile], nextStamp - 1, bitmap);
+            }
+            committedCanvas.drawBitmap(bitmap, tileLeft(column), tileTop(row), null);
+        }
+        if (tileQueueStart == tileQueueEnd) {
+            tileQueueStart = tileQueueEnd = 0;
+        }
+    }
+
+    // Screen position of the left edge of a tile column.
+    private float tileLeft(int column) {
+        return (float) (column * TileCache.TILE_SIZE + marginLeft);
+    }
+
+    private float tileTop(int row) {
+        return (float) (row * TileCache.TILE_SIZE + marginTop);
+    }
+
+    // Tile column or row containing a canvas coordinate, clamped to the canvas.
+    private int tileOf(float canvasCoordinate) {
+        final int tile = (int) Math.floor(canvasCoordinate / ratio / TileCache.TILE_SIZE);
+        return Math.max(0, Math.min(tileColumns - 1, tile));
+    }
+
+    private void drawPendingPaths(long deadline) {
+        if (pendingPaths.isEmpty()) {
+            return;
+        }
+        int drawn = 0;
+        final Iterator<IndexedPath> iterator = pendingPaths.iterator();
+        while (iterator.hasNext()) {
+            final IndexedPath indexedPath = iterator.next();
+            iterator.remove();
+            final DrawPath drawPath = indexedPath.path;
+            if (drawPath.isValid() && drawPath.isCompleted() && indexedPath.bounds.intersects(viewport)) {
+                drawPath(committedCanvas, indexedPath);
+            }
+            if (++drawn % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tracks a stroke that was inserted or changed. A completed stroke is drawn on top of the
+     * layer, unless it is new to the layer and a completed stroke after it overlaps it. Then the
+     * tiles it touches are rasterized again.
+     */
+    private void accept(IndexedPath indexedPath, boolean last) {
+        final DrawPath drawPath = indexedPath.path;
+        PathPoints.bounds(drawPath, indexedPath.bounds);
+        index.put(indexedPath, indexedPath.bounds, indexedPath.order);
+        if (drawPath.isCompleted()) {
+            openPaths.remove(indexedPath);
+            if (last || indexedPath.versioned || isInRestoredSnapshot(indexedPath)
+                    || !isBelowCompletedStrokes(indexedPath)) {
+                pendingPaths.add(indexedPath);
+                if (indexValid) {
+                    addTileVersion(indexedPath, true);
+                }
+            } else if (indexValid) {
+                addTileVersion(indexedPath, false);
+                markTilesChanged(indexedPath);
+            } else {
+                // Drawing it over a snapshot would paint it over later strokes, so the layer is
+                // composed from the tiles once indexing is complete.
+                discardSnapshots();
+                invalidate();
+            }
+        } else if (!openPaths.contains(indexedPath)) {
+            openPaths.add(indexedPath);
+        }
+    }
+
+    private boolean isInRestoredSnapshot(IndexedPath indexedPath) {
+        return restoredSnapshot != null
+                && restoredSnapshot.contains(CanvasSnapshot.keyOf(indexedPath.path, indexedPath.bounds));
+    }
+
+    // Whether a completed stroke painted after this one overlaps it.
+    private boolean isBelowCompletedStrokes(IndexedPath indexedPath) {
+        overlapBounds.set(indexedPath.bounds);
+        overlapBounds.inset(-STROKE_WIDTH, -STROKE_WIDTH);
+        index.query(overlapBounds, visiblePaths);
+        boolean below = false;
+        for (int i = visiblePaths.size() - 1; i >= 0; i--) {
+            final IndexedPath other = visiblePaths.get(i);
+            if (other == indexedPath) {
+                break;
+            }
+            if (other.path.isCompleted()) {
+                below = true;
+                break;
+            }
+        }
+        visiblePaths.clear();
+        return below;
+    }
+
+    /**
+     * Paint order of a stroke added at {@code position} of the indexed strokes, between the
+     * strokes around it. Renumbers all strokes if there is no room left.
+     */
+    private long orderAt(int position) {
+        final long previous = position > 0 ? indexedPaths.get(position - 1).order : 0;
+        final long next = position < indexedPaths.size()
+                ? indexedPaths.get(position).order : previous + 2 * ORDER_SPACING;
+        if (next - previous >= 2) {
+            return previous + (next - previous) / 2;
+        }
+        for (int i = 0; i < indexedPaths.size(); i++) {
+            final IndexedPath indexedPath = indexedPaths.get(i);
+            indexedPath.order = (i < position ? i + 1 : i + 2) * ORDER_SPACING;
+            index.remove(indexedPath);
+            index.put(indexedPath, indexedPath.bounds, indexedPath.order);
+        }
+        return (position + 1) * ORDER_SPACING;
+    }
+
+    // Uses the bounds of the points read by the geometry cache, since strokes of other clients do
+    // not store bounds and computing them would read the whole stroke on every frame.
+    private void drawOpenPath(Canvas canvas, IndexedPath indexedPath) {
+        final DrawPath drawPath = indexedPath.path;
+        final Path path = geometryCache.get(indexedPath, drawPath);
+        if (path.isEmpty() || !geometryCache.getLastBounds().intersects(viewport)) {
+            return;
+        }
+        framePaths++;
+        framePoints += geometryCache.getLastPointCount();
+        canvas.drawPath(path, paints.get(Palette.resolve(drawPath)));
+    }
+
+    private void drawPath(Canvas canvas, IndexedPath indexedPath) {
+        final DrawPath drawPath = indexedPath.path;
+        final Path path = geometryCache.get(indexedPath, drawPath);
+        if (path.isEmpty()) {
+            return;
+        }
+        framePaths++;
+        framePoints += geometryCache.getLastPointCount();
+        canvas.drawPath(path, paints.get(Palette.resolve(drawPath)));
+    }
+
+    // Spreads the bits of a stroke key, so xor-ing keys of neighbouring strokes does not cancel out.
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rasterized tiles of the committed canvas, {@link #TILE_SIZE} pixels square. A tile is identified
+ * by its column and row at the current scale and stored with the version of its content, so a
+ * tile is only used while no stroke touching it has changed.
+ * <p>
+ * Tiles are kept in memory up to a byte budget, least recently used first out. With a directory,
+ * tiles leaving memory are written to disk and read back when they are needed again, also by later
+ * sessions. The tiles on disk have a byte budget of their own, and the least recently used are
+ * deleted first. The cache outlives the render thread, so it may be used from several threads,
+ * though only one at a time is expected.
+ * <p>
+ * A few tiles also keep a {@link Checkpoint}, an older copy that a tile can be rebuilt from by
+ * drawing only the strokes added since, when it cannot be updated in place.
+ */
+public class TileCache {
+    public static final int TILE_SIZE = 256;
+
+    private static final String TAG = "TileCache";
+    private static final int BYTES_PER_TILE = TILE_SIZE * TILE_SIZE * 4;
+    private static final int FILE_MAGIC = 0x54494c45;
+    // Changes whenever strokes are drawn differently, so tiles drawn before are not used.
+    private static final int FILE_FORMAT = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int MAX_FREE_BITMAPS = 4;
+    private static final Comparator<File> BY_LAST_MODIFIED = new Comparator<File>() {
+        @Override
+        public int compare(File first, File second) {
+            final long a = first.lastModified();
+            final long b = second.lastModified();
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    };
+
+    private static class Tile {
+        final Bitmap bitmap;
+        long version;
+        boolean persisted;
+
+        Tile(Bitmap bitmap, long version, boolean persisted) {
+            this.bitmap = bitmap;
+            this.version = version;
+            this.persisted = persisted;
+        }
+    }
+
+    /**
+     * A copy of a tile with {@code version}, containing the strokes up to {@code stamp} in the
+     * order of the renderer.
+     */
+    public static final class Checkpoint {
+        private final Bitmap bitmap;
+        private long version;
+        private long stamp;
+
+        Checkpoint(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        /**
+         * The copy, which stays owned by the cache and is only valid until the next call to
+         * {@link TileCache#checkpoint}.
+         */
+        public Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getStamp() {
+            return stamp;
+        }
+    }
+
+    private final Map<Long, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Checkpoint> checkpoints = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Bitmap> freeBitmaps = new ArrayList<>();
+    private final Canvas copyCanvas = new Canvas();
+    private final int maxTiles;
+    private final int maxCheckpoints;
+    private final File directory;
+    private final long maxDiskBytes;
+    // Sizes of the tile files, the least recently used first. Listed when the disk is first used.
+    private final Map<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean filesListed;
+    private long diskBytes;
+    private ByteBuffer buffer;
+    private double scale = -1;
+
+    /**
+     * @param maxBytes memory used by tiles after which the least recently used are evicted.
+     * @param directory directory of the disk tier, or {@code null} to keep tiles in memory only.
+     * @param maxDiskBytes size of the tiles on disk after which the least recently used are deleted.
+     */
+    public TileCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.maxTiles = (int) Math.max(1, maxBytes / BYTES_PER_TILE);
+        this.maxCheckpoints = Math.max(1, maxTiles / 4);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create " + directory);
+        }
+    }
+
+    /**
+     * Sets the number of canvas units per pixel. Tiles of other scales are dropped from memory.
+     */
+    public synchronized void setScale(double scale) {
+        if (scale == this.scale) {
+            return;
+        }
+        clear();
+        this.scale = scale;
+    }
+
+    /**
+     * Writes the tiles in memory that changed to disk and drops them from memory, for example
+     * when their canvas is no longer shown.
+     */
+    public synchronized void clear() {
+        final Iterator<Map.Entry<Long, Tile>> iterator = tiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, Tile> entry = iterator.next();
+            persist(entry.getValue(), keyColumn(entry.getKey()), keyRow(entry.getKey()));
+            iterator.remove();
+            free(entry.getValue().bitmap);
+        }
+        for (Checkpoint checkpoint : checkpoints.values()) {
+            free(checkpoint.bitmap);
+        }
+        checkpoints.clear();
+    }
+
+    /**
+     * Drops all tiles and deletes those on disk, for example when the canvas was wiped and none of
+     * them can be used again.
+     */
+    public synchronized void deleteAll() {
+        for (Tile tile : tiles.values()) {
+            free(tile.bitmap);
+        }
+        tiles.clear();
+        for (Checkpoint checkpoint : checkpoints.values()) {
+            free(checkpoint.bitmap);
+        }
+        checkpoints.clear();
+        if (directory == null) {
+            return;
+        }
+        listFiles();
+        for (String name : files.keySet()) {
+            deleteFile(name);
+        }
+        files.clear();
+        diskBytes = 0;
+    }
+
+    /**
+     * Returns the tile at {@code column} and {@code row} if it has {@code version}, from memory or
+     * disk. The bitmap stays owned by the cache and must only be drawn.
+     */
+    public synchronized Bitmap get(int column, int row, long version) {
+        final long key = key(column, row);
+        final Tile tile = tiles.get(key);
+        if (tile != null) {
+            return tile.version == version ? tile.bitmap : null;
+        }
+        final Bitmap bitmap = read(column, row, version);
+        if (bitmap == null) {
+            return null;
+        }
+        add(key, new Tile(bitmap, version, true));
+        return bitmap;
+    }
+
+    /**
+     * Returns the tile at {@code column} and {@code row} for drawing a change into it, if it is in
+     * memory with {@code version}. Its version becomes {@code newVersion}.
+     */
+    public synchronized Bitmap update(int column, int row, long version, long newVersion) {
+        final Tile tile = tiles.get(key(column, row));
+        if (tile == null || tile.version != version) {
+            return null;
+        }
+        tile.version = newVersion;
+        tile.persisted = false;
+        return tile.bitmap;
+    }
+
+    /**
+     * Returns a bitmap to rasterize a tile into, to be handed back through {@link #put}.
+     */
+    public synchronized Bitmap obtain() {
+        final int last = freeBitmaps.size() - 1;
+        if (last >= 0) {
+            return freeBitmaps.remove(last);
+        }
+        return Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+    }
+
+    public synchronized void put(int column, int row, long version, Bitmap bitmap) {
+        final Tile previous = tiles.remove(key(column, row));
+        if (previous != null && previous.bitmap != bitmap) {
+            free(previous.bitmap);
+        }
+        add(key(column, row), new Tile(bitmap, version, false));
+    }
+
+    /**
+     * Keeps a copy of {@code tile} as the checkpoint of the tile at {@code column} and {@code row},
+     * replacing the previous one. Only the most recently used checkpoints are kept.
+     */
+    public synchronized void checkpoint(int column, int row, long version, long stamp, Bitmap tile) {
+        final long key = key(column, row);
+        Checkpoint checkpoint = checkpoints.get(key);
+        if (checkpoint == null) {
+            checkpoint = new Checkpoint(obtain());
+            checkpoints.put(key, checkpoint);
+            final Iterator<Checkpoint> iterator = checkpoints.values().iterator();
+            while (checkpoints.size() > maxCheckpoints && iterator.hasNext()) {
+                final Checkpoint eldest = iterator.next();
+                iterator.remove();
+                free(eldest.bitmap);
+            }
+        }
+        copyCanvas.setBitmap(checkpoint.bitmap);
+        copyCanvas.drawBitmap(tile, 0, 0, null);
+        checkpoint.version = version;
+        checkpoint.stamp = stamp;
+    }
+
+    /**
+     * Returns the checkpoint of the tile at {@code column} and {@code row}, or {@code null}.
+     */
+    public synchronized Checkpoint getCheckpoint(int column, int row) {
+        return checkpoints.get(key(column, row));
+    }
+
+    /**
+     * Writes the tiles in memory that changed to disk.
+     */
+    public synchronized void flush() {
+        for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+            persist(entry.getValue(), keyColumn(entry.getKey()), keyRow(entry.getKey()));
+        }
+    }
+
+    private void add(long key, Tile tile) {
+        tiles.put(key, tile);
+        final Iterator<Map.Entry<Long, Tile>> iterator = tiles.entrySet().iterator();
+        while (tiles.size() > maxTiles && iterator.hasNext()) {
+            final Map.Entry<Long, Tile> eldest = iterator.next();
+            persist(eldest.getValue(), keyColumn(eldest.getKey()), keyRow(eldest.getKey()));
+            iterator.remove();
+            free(eldest.getValue().bitmap);
+        }
+    }
+
+    private void free(Bitmap bitmap) {
+        if (freeBitmaps.size() < MAX_FREE_BITMAPS) {
+            freeBitmaps.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    private File fileOf(int column, int row) {
+        return new File(directory, "tile-" + Long.toHexString(Double.doubleToLongBits(scale))
+                + "-" + column + "-" + row);
+    }
+
+    private ByteBuffer buffer() {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(HEADER_SIZE + BYTES_PER_TILE);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void persist(Tile tile, int column, int row) {
+        if (directory == null || tile.persisted) {
+            return;
+        }
+        final ByteBuffer buffer = buffer();
+        buffer.putInt(FILE_MAGIC).putInt(FILE_FORMAT).putLong(tile.version).putInt(TILE_SIZE);
+        tile.bitmap.copyPixelsToBuffer(buffer);
+        buffer.flip();
+        final File file = fileOf(column, row);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            final FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            tile.persisted = true;
+            addFile(file.getName(), HEADER_SIZE + BYTES_PER_TILE);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write tile " + column + "," + row, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private Bitmap read(int column, int row, long version) {
+        if (directory == null) {
+            return null;
+        }
+        final File file = fileOf(column, row);
+        if (file.length() != HEADER_SIZE + BYTES_PER_TILE) {
+            return null;
+        }
+        final ByteBuffer buffer = buffer();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            final FileChannel channel = in.getChannel();
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read tile " + column + "," + row, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+        buffer.flip();
+        if (buffer.remaining() != HEADER_SIZE + BYTES_PER_TILE
+                || buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_FORMAT
+                || buffer.getLong() != version || buffer.getInt() != TILE_SIZE) {
+            return null;
+        }
+        final Bitmap bitmap = obtain();
+        bitmap.copyPixelsFromBuffer(buffer);
+        // Keeps the order of use for later sessions, which list the files by modification time.
+        listFiles();
+        files.get(file.getName());
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            Log.w(TAG, "Failed to touch tile " + column + "," + row);
+        }
+        return bitmap;
+    }
+
+    private void listFiles() {
+        if (filesListed) {
+            return;
+        }
+        filesListed = true;
+        final File[] listed = directory.listFiles();
+        if (listed == null) {
+            return;
+        }
+        Arrays.sort(listed, BY_LAST_MODIFIED);
+        for (File file : listed) {
+            files.put(file.getName(), file.length());
+            diskBytes += file.length();
+        }
+    }
+
+    private void addFile(String name, long size) {
+        listFiles();
+        final Long previous = files.put(name, size);
+        diskBytes += size - (previous != null ? previous : 0);
+        final Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(name)) {
+                continue;
+            }
+            deleteFile(eldest.getKey());
+            diskBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void deleteFile(String name) {
+        final File file = new File(directory, name);
+        if (!file.delete() && file.exists()) {
+            Log.w(TAG, "Failed to delete " + file);
+        }
+    }
+
+    private static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+
+    private static int keyColumn(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int keyRow(long key) {
+        return (int) key;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+/**
+ * Watches the accelerometer for shakes on its own thread, with as little power as possible.
+ * <p>
+ * While the device is still, samples are taken slowly and, where the sensor has a FIFO, delivered
+ * in batches so the CPU can sleep in between. A sample that could be the start of a shake raises
+ * the rate until the device has been still for a while again. A burst of shakes is reported once,
+ * on the main thread, at its first shake.
+ */
+public class ShakeDetector implements SensorEventListener {
+    private static final String TAG = "ShakeDetector";
+    private static final int IDLE_SAMPLING_PERIOD_US = 100000;
+    private static final int IDLE_MAX_REPORT_LATENCY_US = 500000;
+    private static final int ACTIVE_SAMPLING_PERIOD_US = 20000;
+    private static final long ACTIVE_WINDOW_MS = 2000;
+
+    public interface OnShakeListener {
+        void onShake();
+    }
+
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    private final ShakeSensorEventListener shakeListener = new ShakeSensorEventListener();
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final OnShakeListener listener;
+
+    // Only accessed on the detector thread.
+    private boolean registered;
+    private boolean active;
+    private long lastCandidateTimestamp;
+
+    private final Runnable start = new Runnable() {
+        @Override
+        public void run() {
+            register(false);
+        }
+    };
+    private final Runnable stop = new Runnable() {
+        @Override
+        public void run() {
+            handler.removeCallbacks(goIdle);
+            unregister();
+        }
+    };
+    private final Runnable goIdle = new Runnable() {
+        @Override
+        public void run() {
+            if (active) {
+                register(false);
+            }
+        }
+    };
+    private final Runnable quit = new Runnable() {
+        @Override
+        public void run() {
+            stop.run();
+            thread.quit();
+        }
+    };
+    private final Runnable reportShake = new Runnable() {
+        @Override
+        public void run() {
+            listener.onShake();
+        }
+    };
+
+    public ShakeDetector(SensorManager sensorManager, OnShakeListener listener) {
+        this.sensorManager = sensorManager;
+        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        this.listener = listener;
+        this.thread = new HandlerThread(TAG);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+        shakeListener.setOnShakeListener(new ShakeSensorEventListener.OnShakeListener() {
+            @Override
+            public void onShake(int count) {
+                // Later shakes of the same burst would only wipe an empty canvas again.
+                if (count == 1) {
+                    mainHandler.post(reportShake);
+                }
+            }
+        });
+    }
+
+    public void start() {
+        if (accelerometer != null) {
+            handler.post(start);
+        }
+    }
+
+    public void stop() {
+        handler.post(stop);
+        mainHandler.removeCallbacks(reportShake);
+    }
+
+    /**
+     * Stops detecting and ends the detector thread.
+     */
+    public void close() {
+        handler.post(quit);
+        mainHandler.removeCallbacks(reportShake);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        // Batched samples may still arrive after stopping.
+        if (!registered) {
+            return;
+        }
+        shakeListener.onSensorChanged(event);
+        final long candidateTimestamp = shakeListener.getCandidateTimestamp();
+        if (candidateTimestamp != lastCandidateTimestamp) {
+            lastCandidateTimestamp = candidateTimestamp;
+            if (!active) {
+                register(true);
+            }
+            handler.removeCallbacks(goIdle);
+            handler.postDelayed(goIdle, ACTIVE_WINDOW_MS);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // ignore
+    }
+
+    private void register(boolean active) {
+        unregister();
+        if (active) {
+            sensorManager.registerListener(this, accelerometer, ACTIVE_SAMPLING_PERIOD_US, handler);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && accelerometer.getFifoMaxEventCount() > 0) {
+            sensorManager.registerListener(this, accelerometer, IDLE_SAMPLING_PERIOD_US,
+                    IDLE_MAX_REPORT_LATENCY_US, handler);
+        } else {
+            sensorManager.registerListener(this, accelerometer, IDLE_SAMPLING_PERIOD_US, handler);
+        }
+        this.active = active;
+        registered = true;
+    }
+
+    private void unregister() {
+        if (registered) {
+            sensorManager.unregisterListener(this);
+            registered = false;
+            active = false;
+        }
+    }
+}
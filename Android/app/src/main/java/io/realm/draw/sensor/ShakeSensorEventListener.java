@@ -21,14 +21,26 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 
+/**
+ * Detects shakes from accelerometer samples. Thresholds are compared against the squared
+ * acceleration, so a sample costs a few multiplications, and times are taken from the samples,
+ * so batched samples are judged by when they were measured rather than when they arrived.
+ */
 public class ShakeSensorEventListener implements SensorEventListener {
 
     private static final float SHAKE_THRESHOLD_GRAVITY = 2.7F;
-    private static final int SHAKE_SLOP_TIME_MS = 500;
-    private static final int SHAKE_COUNT_RESET_TIME_MS = 3000;
+    // Well below a shake, but above walking around with the device.
+    private static final float CANDIDATE_THRESHOLD_GRAVITY = 1.6F;
+    private static final long SHAKE_SLOP_TIME_NS = 500000000L;
+    private static final long SHAKE_COUNT_RESET_TIME_NS = 3000000000L;
+
+    private static final float SHAKE_THRESHOLD_SQUARED = squared(SHAKE_THRESHOLD_GRAVITY * SensorManager.GRAVITY_EARTH);
+    private static final float CANDIDATE_THRESHOLD_SQUARED =
+            squared(CANDIDATE_THRESHOLD_GRAVITY * SensorManager.GRAVITY_EARTH);
 
     private OnShakeListener mListener;
     private long mShakeTimestamp;
+    private long mCandidateTimestamp;
     private int mShakeCount;
 
     public void setOnShakeListener(OnShakeListener listener) {
@@ -36,9 +48,19 @@ public class ShakeSensorEventListener implements SensorEventListener {
     }
 
     public interface OnShakeListener {
+        /**
+         * @param count number of shakes in the current burst, starting at 1.
+         */
         public void onShake(int count);
     }
 
+    /**
+     * Sensor time in nanoseconds of the last sample that could be the start of a shake, or 0.
+     */
+    public long getCandidateTimestamp() {
+        return mCandidateTimestamp;
+    }
+
     @Override
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
         // ignore
@@ -46,37 +68,44 @@ public class ShakeSensorEventListener implements SensorEventListener {
 
     @Override
     public void onSensorChanged(SensorEvent event) {
+        onSample(event.values[0], event.values[1], event.values[2], event.timestamp);
+    }
 
-        if (mListener != null) {
-            float x = event.values[0];
-            float y = event.values[1];
-            float z = event.values[2];
-
-            float gX = x / SensorManager.GRAVITY_EARTH;
-            float gY = y / SensorManager.GRAVITY_EARTH;
-            float gZ = z / SensorManager.GRAVITY_EARTH;
+    /**
+     * Handles one accelerometer sample, in m/s^2, taken at {@code now} in sensor nanoseconds.
+     */
+    void onSample(float x, float y, float z, long now) {
 
-            // gForce will be close to 1 when there is no movement.
-            double gForce = Math.sqrt(gX * gX + gY * gY + gZ * gZ);
+        if (mListener != null) {
+            // Close to GRAVITY_EARTH squared when there is no movement.
+            final float accelerationSquared = x * x + y * y + z * z;
+            if (accelerationSquared <= CANDIDATE_THRESHOLD_SQUARED) {
+                return;
+            }
 
-            if (gForce > SHAKE_THRESHOLD_GRAVITY) {
-                final long now = System.currentTimeMillis();
+            mCandidateTimestamp = now;
+            if (accelerationSquared <= SHAKE_THRESHOLD_SQUARED) {
+                return;
+            }
 
-                // ignore shake events too close to each other (500ms)
-                if (mShakeTimestamp + SHAKE_SLOP_TIME_MS > now) {
-                    return;
-                }
+            // ignore shake events too close to each other (500ms)
+            if (mShakeTimestamp + SHAKE_SLOP_TIME_NS > now) {
+                return;
+            }
 
-                // reset the shake count after 3 seconds of no shakes
-                if (mShakeTimestamp + SHAKE_COUNT_RESET_TIME_MS < now) {
-                    mShakeCount = 0;
-                }
+            // reset the shake count after 3 seconds of no shakes
+            if (mShakeTimestamp + SHAKE_COUNT_RESET_TIME_NS < now) {
+                mShakeCount = 0;
+            }
 
-                mShakeTimestamp = now;
-                mShakeCount++;
+            mShakeTimestamp = now;
+            mShakeCount++;
 
-                mListener.onShake(mShakeCount);
-            }
+            mListener.onShake(mShakeCount);
         }
     }
+
+    private static float squared(float value) {
+        return value * value;
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.simulation;
+
+/**
+ * The load generated by a {@link LoadSimulator}: how many collaborators draw at once, how often
+ * each of them starts a stroke, and how long and fast the strokes are.
+ */
+public class LoadProfile {
+    public static final LoadProfile DEFAULT = new LoadProfile(12, 30, 120, 120, 0);
+
+    private final int participants;
+    private final int strokesPerMinute;
+    private final int pointsPerStroke;
+    private final int pointsPerSecond;
+    private final long durationMillis;
+
+    /**
+     * @param strokesPerMinute strokes started by each participant per minute. A participant
+     *                         starts the next stroke right away when the previous one takes longer.
+     * @param pointsPerSecond rate at which a participant adds points to its stroke.
+     * @param durationMillis how long to run, or 0 to run until stopped.
+     */
+    public LoadProfile(int participants, int strokesPerMinute, int pointsPerStroke, int pointsPerSecond,
+                       long durationMillis) {
+        if (participants <= 0) {
+            throw new IllegalArgumentException("participants must be positive: " + participants);
+        }
+        if (strokesPerMinute <= 0) {
+            throw new IllegalArgumentException("strokesPerMinute must be positive: " + strokesPerMinute);
+        }
+        if (pointsPerStroke < 2) {
+            throw new IllegalArgumentException("pointsPerStroke must be at least 2: " + pointsPerStroke);
+        }
+        if (pointsPerSecond <= 0) {
+            throw new IllegalArgumentException("pointsPerSecond must be positive: " + pointsPerSecond);
+        }
+        if (durationMillis < 0) {
+            throw new IllegalArgumentException("durationMillis must not be negative: " + durationMillis);
+        }
+        this.participants = participants;
+        this.strokesPerMinute = strokesPerMinute;
+        this.pointsPerStroke = pointsPerStroke;
+        this.pointsPerSecond = pointsPerSecond;
+        this.durationMillis = durationMillis;
+    }
+
+    public int getParticipants() {
+        return participants;
+    }
+
+    public int getStrokesPerMinute() {
+        return strokesPerMinute;
+    }
+
+    public int getPointsPerStroke() {
+        return pointsPerStroke;
+    }
+
+    public int getPointsPerSecond() {
+        return pointsPerSecond;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadProfile{participants=" + participants + ", strokesPerMinute=" + strokesPerMinute
+                + ", pointsPerStroke=" + pointsPerStroke + ", pointsPerSecond=" + pointsPerSecond
+                + ", durationMillis=" + durationMillis + "}";
+    }
+}
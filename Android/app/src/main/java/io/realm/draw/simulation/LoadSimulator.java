@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.simulation;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.metrics.DrawMetrics;
+import io.realm.draw.models.CanvasState;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.Palette;
+import io.realm.draw.models.PathPoints;
+import io.realm.draw.models.PointStorage;
+
+/**
+ * Draws strokes on behalf of simulated collaborators, as described by a {@link LoadProfile}, so
+ * the renderer can be measured under a repeatable remote load without an Object Server.
+ * <p>
+ * The changes of all collaborators are committed together every {@link #TICK_MILLIS}, similar to
+ * how sync integrates the changesets of other clients. Commits are reported to {@link DrawMetrics}
+ * so the delay until they reach the render thread is measured, together with memory in use.
+ * Strokes follow a seeded random walk, so every run with the same profile draws the same canvas.
+ */
+public class LoadSimulator extends Thread {
+    private static final String TAG = "LoadSimulator";
+    private static final long TICK_MILLIS = 50;
+    private static final long MEMORY_SAMPLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SEED = 683;
+    // Distance between two points of a stroke, in canvas units.
+    private static final float STEP = 3;
+    // Maximum change of direction between two points, in radians.
+    private static final double TURN = 0.35;
+
+    private final RealmConfiguration configuration;
+    private final LoadProfile profile;
+    private final PointStorage pointStorage;
+    private final DrawMetrics metrics;
+    private final float canvasSize;
+    private final Random random = new Random(SEED);
+    private volatile boolean closed;
+
+    // Only accessed on the simulator thread.
+    private float[] points = new float[64];
+    private final Bounds bounds = new Bounds();
+    private long generation;
+    private int strokes;
+    private long pointCount;
+    private int commits;
+
+    /**
+     * @param canvasSize width and height of the canvas, in canvas units.
+     */
+    public LoadSimulator(RealmConfiguration configuration, LoadProfile profile, PointStorage pointStorage,
+                         DrawMetrics metrics, float canvasSize) {
+        super(TAG);
+        this.configuration = configuration;
+        this.profile = profile;
+        this.pointStorage = pointStorage;
+        this.metrics = metrics;
+        this.canvasSize = canvasSize;
+    }
+
+    /**
+     * Stops the simulation after the current commit. Does not block.
+     */
+    public void close() {
+        closed = true;
+        interrupt();
+    }
+
+    @Override
+    public void run() {
+        Log.i(TAG, "Starting " + profile);
+        final Realm realm = Realm.getInstance(configuration);
+        final long start = System.nanoTime();
+        final long end = profile.getDurationMillis() == 0
+                ? Long.MAX_VALUE : start + TimeUnit.MILLISECONDS.toNanos(profile.getDurationMillis());
+        final long strokeInterval = TimeUnit.MINUTES.toNanos(1) / profile.getStrokesPerMinute();
+        final Participant[] participants = new Participant[profile.getParticipants()];
+        for (int i = 0; i < participants.length; i++) {
+            // Staggered, so the participants do not all start their strokes in the same commit.
+            participants[i] = new Participant(start + (long) (random.nextDouble() * strokeInterval));
+        }
+
+        long nextMemorySample = start;
+        try {
+            long now = start;
+            while (!closed && now < end) {
+                realm.beginTransaction();
+                generation = CanvasState.currentGeneration(realm);
+                for (Participant participant : participants) {
+                    participant.advance(realm, now, strokeInterval);
+                }
+                realm.commitTransaction();
+                metrics.onRemoteCommit(System.nanoTime());
+                commits++;
+
+                if (now >= nextMemorySample) {
+                    final Runtime runtime = Runtime.getRuntime();
+                    metrics.onMemorySample(runtime.totalMemory() - runtime.freeMemory(),
+                            Debug.getNativeHeapAllocatedSize());
+                    nextMemorySample = now + MEMORY_SAMPLE_NANOS;
+                }
+                try {
+                    Thread.sleep(TICK_MILLIS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                now = System.nanoTime();
+            }
+        } finally {
+            if (realm.isInTransaction()) {
+                realm.cancelTransaction();
+            }
+            realm.close();
+            Log.i(TAG, "Simulated " + strokes + " strokes with " + pointCount + " points in " + commits
+                    + " commits over " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    private final class Participant {
+        private DrawPath path;
+        private long strokeStart;
+        private long nextStroke;
+        private int emitted;
+        private float x;
+        private float y;
+        private double direction;
+
+        Participant(long firstStroke) {
+            this.nextStroke = firstStroke;
+        }
+
+        void advance(Realm realm, long now, long strokeInterval) {
+            if (path != null && !path.isValid()) {
+                // The canvas was wiped.
+                path = null;
+            }
+            if (path == null) {
+                if (now < nextStroke) {
+                    return;
+                }
+                beginStroke(realm, now);
+                nextStroke = now + strokeInterval;
+            }
+
+            final long due = Math.min(profile.getPointsPerStroke(),
+                    1 + TimeUnit.NANOSECONDS.toMillis(now - strokeStart) * profile.getPointsPerSecond() / 1000);
+            final int count = (int) due - emitted;
+            if (count > 0) {
+                if (points.length < count * 2) {
+                    points = new float[count * 2];
+                }
+                for (int i = 0; i < count; i++) {
+                    walk();
+                    points[i * 2] = x;
+                    points[i * 2 + 1] = y;
+                }
+                PathPoints.append(realm, path, points, count, pointStorage, bounds);
+                emitted += count;
+                pointCount += count;
+            }
+            if (emitted == profile.getPointsPerStroke()) {
+                PathPoints.compact(path, null);
+                path.setCompleted(true);
+                path = null;
+                strokes++;
+            }
+        }
+
+        private void beginStroke(Realm realm, long now) {
+            final int colorId = 1 + random.nextInt(Palette.size() - 1);
+            path = realm.createObject(DrawPath.class);
+            path.setId(UUID.randomUUID().toString());
+            path.setColorId(colorId);
+            path.setColor(Palette.nameOf(colorId));
+            path.setGeneration(generation);
+            strokeStart = now;
+            emitted = 0;
+            x = random.nextFloat() * canvasSize;
+            y = random.nextFloat() * canvasSize;
+            direction = random.nextDouble() * 2 * Math.PI;
+        }
+
+        private void walk() {
+            direction += (random.nextDouble() * 2 - 1) * TURN;
+            x += (float) (Math.cos(direction) * STEP);
+            y += (float) (Math.sin(direction) * STEP);
+            // Turn back at the edges of the canvas.
+            if (x < 0 || x > canvasSize) {
+                direction = Math.PI - direction;
+                x = Math.max(0, Math.min(canvasSize, x));
+            }
+            if (y < 0 || y > canvasSize) {
+                direction = -direction;
+                y = Math.max(0, Math.min(canvasSize, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.codec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PointCodecTest {
+
+    @Test
+    public void roundTripStaysWithinMaxError() {
+        final Random random = new Random(42);
+        final float[] points = new float[20000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextFloat() * 4000 - 2000;
+        }
+        final byte[] data = PointCodec.encode(points, 0, points.length / 2);
+        final float[] decoded = new float[points.length];
+
+        assertEquals(points.length / 2, PointCodec.decode(data, decoded, 0));
+        assertArrayEquals(points, decoded, PointCodec.MAX_ERROR);
+    }
+
+    @Test
+    public void negativeValuesSurviveBlockBoundaries() {
+        // The high byte of every value is negative, so a decoder that does not sign extend it, or
+        // reads it from the neighbouring block, gets them wrong.
+        final float[] first = {-0.0625f, -1};
+        final float[] second = {-2047.5f, -128};
+        final byte[] data = concat(PointCodec.encode(first, 0, 1), PointCodec.encode(second, 0, 1));
+        final float[] decoded = new float[4];
+
+        assertEquals(2, PointCodec.decode(data, decoded, 0));
+        assertArrayEquals(new float[]{-0.0625f, -1, -2047.5f, -128}, decoded, 0);
+
+        final float[] last = new float[2];
+        assertEquals(1, PointCodec.decode(data, 1, 1, last, 0));
+        assertArrayEquals(second, last, 0);
+    }
+
+    @Test
+    public void valuesOutsideTheRangeAreClamped() {
+        final float[] points = {3000, -3000, 2048, -2048};
+        final float[] decoded = new float[4];
+        PointCodec.decode(PointCodec.encode(points, 0, 2), decoded, 0);
+
+        final float max = Short.MAX_VALUE / PointCodec.SCALE;
+        assertArrayEquals(new float[]{max, -2048, max, -2048}, decoded, 0);
+        assertEquals(Short.MAX_VALUE, PointCodec.quantize(Float.POSITIVE_INFINITY));
+        assertEquals(Short.MIN_VALUE, PointCodec.quantize(Float.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void emptyInput() {
+        final byte[] data = PointCodec.encode(new float[0], 0, 0);
+
+        assertEquals(0, data.length);
+        assertEquals(0, PointCodec.pointCount(data));
+        assertEquals(0, PointCodec.pointCount(null));
+        assertEquals(0, PointCodec.decode(data, new float[0], 0));
+    }
+
+    @Test
+    public void pointCountOfConcatenatedChunks() {
+        final float[] points = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        final byte[] data = concat(PointCodec.encode(points, 0, 2), PointCodec.encode(points, 2, 3));
+        final float[] decoded = new float[points.length];
+
+        assertEquals(5, PointCodec.pointCount(data));
+        assertEquals(5, PointCodec.decode(data, decoded, 0));
+        assertArrayEquals(points, decoded, 0);
+    }
+
+    @Test
+    public void encodesLittleEndianSixteenthsOfAUnit() {
+        final float[] points = {1.5f, -0.25f};
+        final byte[] data = PointCodec.encode(points, 0, 1);
+
+        // 1.5 * 16 = 24 and -0.25 * 16 = -4, two bytes each, low byte first.
+        assertArrayEquals(new byte[]{24, 0, (byte) 0xfc, (byte) 0xff}, data);
+    }
+
+    @Test
+    public void drawnStrokeTakesFourBytesPerPointWithinMaxError() {
+        final Random random = new Random(7);
+        final int count = 1000;
+        final float[] points = new float[count * 2];
+        float x = 341.5f;
+        float y = 341.5f;
+        for (int i = 0; i < count; i++) {
+            // Touch samples land anywhere between pixels of a 683 unit canvas.
+            x = Math.max(0, Math.min(683, x + random.nextFloat() * 6 - 3));
+            y = Math.max(0, Math.min(683, y + random.nextFloat() * 6 - 3));
+            points[i * 2] = x;
+            points[i * 2 + 1] = y;
+        }
+        final byte[] data = PointCodec.encode(points, 0, count);
+        final float[] decoded = new float[count * 2];
+        PointCodec.decode(data, decoded, 0);
+
+        assertEquals(count * 4, data.length);
+        float maxError = 0;
+        for (int i = 0; i < points.length; i++) {
+            maxError = Math.max(maxError, Math.abs(points[i] - decoded[i]));
+        }
+        assertTrue("Error " + maxError, maxError <= PointCodec.MAX_ERROR);
+        // Coordinates are quantized, not stored exactly.
+        assertTrue("Error " + maxError, maxError > 0);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        final byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strokes kept in memory, for tests of the exporters.
+ */
+public class ArraySource implements StrokeSource {
+    private final float canvasSize;
+    private final List<Integer> colors = new ArrayList<>();
+    private final List<float[]> strokes = new ArrayList<>();
+    private int openReaders;
+
+    public ArraySource(float canvasSize) {
+        this.canvasSize = canvasSize;
+    }
+
+    /**
+     * Adds a stroke of interleaved x/y points.
+     */
+    public ArraySource add(int color, float... points) {
+        colors.add(color);
+        strokes.add(points);
+        return this;
+    }
+
+    /**
+     * Number of readers opened and not closed yet.
+     */
+    public int getOpenReaders() {
+        return openReaders;
+    }
+
+    @Override
+    public float getCanvasSize() {
+        return canvasSize;
+    }
+
+    @Override
+    public StrokeReader open() {
+        openReaders++;
+        return new StrokeReader() {
+            private int next;
+
+            @Override
+            public int read(StrokeBatch batch) {
+                batch.clear();
+                while (next < strokes.size() && !batch.isFull()) {
+                    final float[] points = strokes.get(next);
+                    batch.add(colors.get(next), points, points.length / 2);
+                    next++;
+                }
+                return batch.size();
+            }
+
+            @Override
+            public void close() {
+                openReaders--;
+            }
+        };
+    }
+}
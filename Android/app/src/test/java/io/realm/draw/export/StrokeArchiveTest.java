@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.realm.draw.codec.PointCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class StrokeArchiveTest {
+    private static final int BATCH_SIZE = 2;
+    private static final float CANVAS_SIZE = 683;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("strokes", ".strokes");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void strokesAreReadBackInOrder() throws IOException {
+        final ArraySource source = new ArraySource(CANVAS_SIZE)
+                .add(0xff1c283f, 1.5f, 2.25f, 10, 20, 30.1f, 40.7f)
+                .add(0xfffcc397, 100, 200)
+                .add(0xff9a50a5, 0, 0, CANVAS_SIZE, CANVAS_SIZE)
+                .add(0xff1c283f, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9);
+
+        assertEquals(4, StrokeArchive.write(source, file, BATCH_SIZE));
+        assertEquals(0, source.getOpenReaders());
+
+        final StrokeArchive archive = StrokeArchive.open(file);
+        assertEquals(CANVAS_SIZE, archive.getCanvasSize(), 0);
+        final List<Stroke> strokes = readAll(archive);
+        assertEquals(4, strokes.size());
+        assertEquals(0xff1c283f, strokes.get(0).color);
+        assertEquals(0xfffcc397, strokes.get(1).color);
+        assertEquals(0xff9a50a5, strokes.get(2).color);
+        assertPoints(new float[] {1.5f, 2.25f, 10, 20, 30.1f, 40.7f}, strokes.get(0).points);
+        assertPoints(new float[] {100, 200}, strokes.get(1).points);
+        assertPoints(new float[] {0, 0, CANVAS_SIZE, CANVAS_SIZE}, strokes.get(2).points);
+        assertPoints(new float[] {5, 5, 6, 6, 7, 7, 8, 8, 9, 9}, strokes.get(3).points);
+    }
+
+    @Test
+    public void emptyCanvasHasNoStrokes() throws IOException {
+        assertEquals(0, StrokeArchive.write(new ArraySource(CANVAS_SIZE), file, BATCH_SIZE));
+
+        final StrokeReader reader = StrokeArchive.open(file).open();
+        try {
+            assertEquals(0, reader.read(new StrokeBatch(BATCH_SIZE)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] {'P', 'N', 'G', 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        } finally {
+            out.close();
+        }
+
+        try {
+            StrokeArchive.open(file);
+            fail("Opened a file that is not an archive");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static final class Stroke {
+        final int color;
+        final float[] points;
+
+        Stroke(int color, float[] points) {
+            this.color = color;
+            this.points = points;
+        }
+    }
+
+    private static List<Stroke> readAll(StrokeSource source) throws IOException {
+        final List<Stroke> strokes = new ArrayList<>();
+        final StrokeBatch batch = new StrokeBatch(BATCH_SIZE);
+        final StrokeReader reader = source.open();
+        try {
+            while (reader.read(batch) > 0) {
+                for (int i = 0; i < batch.size(); i++) {
+                    final int start = batch.getStart(i) * 2;
+                    final int end = start + batch.getPointCount(i) * 2;
+                    strokes.add(new Stroke(batch.getColor(i), Arrays.copyOfRange(batch.getPoints(), start, end)));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return strokes;
+    }
+
+    private static void assertPoints(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], PointCodec.MAX_ERROR);
+        }
+    }
+}
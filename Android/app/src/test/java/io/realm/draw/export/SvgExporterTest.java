@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import io.realm.draw.geometry.Bounds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SvgExporterTest {
+    private static final int BATCH_SIZE = 2;
+
+    @Test
+    public void writesOnePathPerStrokeScaledToTheImage() throws IOException {
+        final ArraySource source = new ArraySource(100)
+                .add(0xff1c283f, 10, 20, 30, 40, 50, 20)
+                .add(0xfffcc397, 60, 60, 70, 80)
+                .add(0xff39477f, 5, 5, 6, 90);
+        final StringWriter out = new StringWriter();
+
+        assertEquals(3, SvgExporter.write(source, 200, out, BATCH_SIZE));
+        assertEquals(0, source.getOpenReaders());
+
+        final String svg = out.toString();
+        assertTrue(svg, svg.startsWith("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"200\" height=\"200\""));
+        assertTrue(svg, svg.endsWith("</g>\n</svg>\n"));
+        // The stroke width is scaled with the canvas.
+        assertTrue(svg, svg.contains("stroke-width=\"8\""));
+        assertEquals(3, svg.split("<path ", -1).length - 1);
+        assertTrue(svg, svg.contains("<path stroke=\"#1c283f\" d=\"M20,40"));
+        assertTrue(svg, svg.contains("<path stroke=\"#fcc397\" d=\"M120,120"));
+        assertTrue(svg, svg.indexOf("#1c283f") < svg.indexOf("#fcc397"));
+        assertTrue(svg, svg.indexOf("#fcc397") < svg.indexOf("#39477f"));
+    }
+
+    @Test
+    public void emptyCanvasIsWhite() throws IOException {
+        final StringWriter out = new StringWriter();
+
+        assertEquals(0, SvgExporter.write(new ArraySource(100), 100, out, BATCH_SIZE));
+        assertTrue(out.toString().contains("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>"));
+        assertFalse(out.toString().contains("<path"));
+    }
+
+    @Test
+    public void touchesIncludesHalfTheStrokeWidth() {
+        final Bounds bounds = new Bounds();
+        bounds.set(10, 10, 20, 20);
+
+        assertTrue(SvgExporter.touches(bounds, 1, 21, 21, 30, 30));
+        assertFalse(SvgExporter.touches(bounds, 1, 23, 23, 30, 30));
+        // Half the canvas units per pixel doubles the distances.
+        assertTrue(SvgExporter.touches(bounds, 0.5, 43, 43, 50, 50));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeSimplifierTest {
+    private static final float TOLERANCE = StrokeSimplifier.DEFAULT_TOLERANCE;
+
+    @Test
+    public void droppedPointsStayWithinTolerance() {
+        final Random random = new Random(683);
+        final StrokeSimplifier simplifier = new StrokeSimplifier(TOLERANCE);
+        int dropped = 0;
+        for (int stroke = 0; stroke < 200; stroke++) {
+            final float[] original = randomWalk(random, 20 + random.nextInt(500));
+            final int count = original.length / 2;
+            final float[] points = Arrays.copyOf(original, original.length);
+            final int kept = simplifier.simplify(points, count);
+            dropped += count - kept;
+
+            // Kept points are a subsequence of the original ones.
+            int next = 0;
+            int previous = -1;
+            for (int i = 0; i < count; i++) {
+                if (next < kept && original[i * 2] == points[next * 2] && original[i * 2 + 1] == points[next * 2 + 1]) {
+                    for (int j = previous + 1; j < i; j++) {
+                        final float distance = (float) Math.sqrt(distanceSquared(original, j, previous, i));
+                        assertTrue("Point " + j + " is " + distance + " away", distance <= TOLERANCE * 1.0001f);
+                    }
+                    previous = i;
+                    next++;
+                }
+            }
+            assertEquals(kept, next);
+            assertEquals(count - 1, previous);
+        }
+        assertTrue("Nothing was simplified", dropped > 0);
+    }
+
+    @Test
+    public void keepsEndpoints() {
+        final float[] points = {0, 0, 1, 0.01f, 2, 0, 3, -0.01f, 4, 0};
+        final int kept = new StrokeSimplifier(TOLERANCE).simplify(points, 5);
+
+        assertEquals(2, kept);
+        assertArrayEquals(new float[]{0, 0, 4, 0}, Arrays.copyOf(points, 4), 0);
+    }
+
+    @Test
+    public void keepsATap() {
+        final StrokeSimplifier simplifier = new StrokeSimplifier(TOLERANCE);
+        final float[] single = {10, 20};
+        assertEquals(1, simplifier.simplify(single, 1));
+        assertArrayEquals(new float[]{10, 20}, single, 0);
+
+        final float[] repeated = {10, 20, 10, 20, 10, 20};
+        assertEquals(2, simplifier.simplify(repeated, 3));
+        assertArrayEquals(new float[]{10, 20, 10, 20}, Arrays.copyOf(repeated, 4), 0);
+    }
+
+    @Test
+    public void zeroToleranceKeepsEveryPoint() {
+        final float[] points = randomWalk(new Random(1), 100);
+        final float[] copy = Arrays.copyOf(points, points.length);
+
+        assertEquals(100, new StrokeSimplifier(0).simplify(points, 100));
+        assertArrayEquals(copy, points, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeTolerance() {
+        new StrokeSimplifier(-1);
+    }
+
+    private static float[] randomWalk(Random random, int count) {
+        final float[] points = new float[count * 2];
+        float x = random.nextFloat() * 683;
+        float y = random.nextFloat() * 683;
+        double direction = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < count; i++) {
+            points[i * 2] = x;
+            points[i * 2 + 1] = y;
+            direction += (random.nextDouble() - 0.5) * 0.6;
+            final float step = random.nextFloat() * 2;
+            x += (float) Math.cos(direction) * step;
+            y += (float) Math.sin(direction) * step;
+        }
+        return points;
+    }
+
+    // Squared distance from point index to the segment between points first and last, computed
+    // in double precision independently of the simplifier.
+    private static double distanceSquared(float[] points, int index, int first, int last) {
+        final double x = points[index * 2];
+        final double y = points[index * 2 + 1];
+        final double x1 = points[first * 2];
+        final double y1 = points[first * 2 + 1];
+        final double dx = points[last * 2] - x1;
+        final double dy = points[last * 2 + 1] - y1;
+        final double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        }
+        final double px = x1 + t * dx - x;
+        final double py = y1 + t * dy - y;
+        return px * px + py * py;
+    }
+}
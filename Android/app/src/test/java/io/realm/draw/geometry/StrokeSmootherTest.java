@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.geometry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StrokeSmootherTest {
+
+    // Records the segments as text, so curves can be compared exactly.
+    private static final class RecordingSink implements StrokeSmoother.Sink {
+        final List<String> segments = new ArrayList<>();
+
+        @Override
+        public void moveTo(float x, float y) {
+            segments.add("M " + x + " " + y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            segments.add("L " + x + " " + y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            segments.add("Q " + controlX + " " + controlY + " " + x + " " + y);
+        }
+    }
+
+    @Test
+    public void extendingAStrokeKeepsTheEmittedSegments() {
+        final Random random = new Random(211);
+        for (int stroke = 0; stroke < 100; stroke++) {
+            final float[] points = randomWalk(random, 2 + random.nextInt(200));
+            final int count = points.length / 2;
+            final List<String> complete = smooth(points, count);
+
+            final StrokeSmoother smoother = new StrokeSmoother();
+            final RecordingSink sink = new RecordingSink();
+            for (int i = 0; i < count; i++) {
+                smoother.add(points[i * 2], points[i * 2 + 1], sink);
+                // What was drawn so far is a prefix of the curve of the whole stroke.
+                assertEquals(complete.subList(0, sink.segments.size()), sink.segments);
+            }
+            smoother.finish(sink);
+            assertEquals(complete, sink.segments);
+        }
+    }
+
+    @Test
+    public void isDeterministic() {
+        final float[] points = randomWalk(new Random(5), 300);
+        final StrokeSmoother smoother = new StrokeSmoother();
+        final RecordingSink first = new RecordingSink();
+        final RecordingSink second = new RecordingSink();
+        for (int i = 0; i < 300; i++) {
+            smoother.add(points[i * 2], points[i * 2 + 1], first);
+        }
+        smoother.finish(first);
+        // A reused smoother draws the same curve again.
+        smoother.reset();
+        for (int i = 0; i < 300; i++) {
+            smoother.add(points[i * 2], points[i * 2 + 1], second);
+        }
+        smoother.finish(second);
+
+        assertEquals(first.segments, second.segments);
+        assertEquals(first.segments, smooth(points, 300));
+    }
+
+    @Test
+    public void joinsEdgeMidpoints() {
+        final RecordingSink sink = new RecordingSink();
+        final StrokeSmoother smoother = new StrokeSmoother();
+        smoother.add(0, 0, sink);
+        smoother.add(10, 0, sink);
+        smoother.add(10, 10, sink);
+        smoother.finish(sink);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("M 0.0 0.0");
+        expected.add("L 5.0 0.0");
+        expected.add("Q 10.0 0.0 10.0 5.0");
+        expected.add("L 10.0 10.0");
+        assertEquals(expected, sink.segments);
+        assertEquals(3, smoother.getVertexCount());
+    }
+
+    @Test
+    public void drawsATapAsADot() {
+        final RecordingSink sink = new RecordingSink();
+        final StrokeSmoother smoother = new StrokeSmoother();
+        smoother.add(3, 4, sink);
+        smoother.finish(sink);
+        // Finishing twice does not add another segment.
+        smoother.finish(sink);
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("M 3.0 4.0");
+        expected.add("L 3.0 4.0");
+        assertEquals(expected, sink.segments);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsVerticesAfterFinish() {
+        final RecordingSink sink = new RecordingSink();
+        final StrokeSmoother smoother = new StrokeSmoother();
+        smoother.add(0, 0, sink);
+        smoother.finish(sink);
+        smoother.add(1, 1, sink);
+    }
+
+    private static List<String> smooth(float[] points, int count) {
+        final StrokeSmoother smoother = new StrokeSmoother();
+        final RecordingSink sink = new RecordingSink();
+        for (int i = 0; i < count; i++) {
+            smoother.add(points[i * 2], points[i * 2 + 1], sink);
+        }
+        smoother.finish(sink);
+        return sink.segments;
+    }
+
+    private static float[] randomWalk(Random random, int count) {
+        final float[] points = new float[count * 2];
+        float x = 500;
+        float y = 500;
+        for (int i = 0; i < count; i++) {
+            x += random.nextFloat() * 20 - 10;
+            y += random.nextFloat() * 20 - 10;
+            points[i * 2] = x;
+            points[i * 2 + 1] = y;
+        }
+        return points;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import org.junit.Test;
+
+import io.realm.draw.models.Palette;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeCommandTest {
+
+    @Test
+    public void appendsToTheSameStrokeMerge() {
+        final StrokeCommand begin = StrokeCommand.begin("a", Palette.DEFAULT_ID, 1, 2, 300);
+        final StrokeCommand first = append("a", 200, 3, 4, 5, 6);
+        final StrokeCommand second = append("a", 400, 7, 8);
+
+        assertTrue(begin.canMerge(first));
+        begin.append(first);
+        assertTrue(begin.canMerge(second));
+        begin.append(second);
+
+        assertEquals(4, begin.pointCount);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i + 1, begin.points[i], 0);
+        }
+        // Latency is measured from the oldest touch sample.
+        assertEquals(200, begin.inputNanos);
+    }
+
+    @Test
+    public void otherCommandsDoNotMerge() {
+        final StrokeCommand append = append("a", 0, 1, 2);
+
+        assertFalse(append.canMerge(append("b", 0, 3, 4)));
+        assertFalse(append.canMerge(StrokeCommand.complete("a", Palette.DEFAULT_ID)));
+        assertFalse(append.canMerge(StrokeCommand.wipe()));
+        assertFalse(StrokeCommand.complete("a", Palette.DEFAULT_ID).canMerge(append("a", 0, 3, 4)));
+        assertFalse(StrokeCommand.cancel("a").canMerge(append("a", 0, 3, 4)));
+    }
+
+    private static StrokeCommand append(String strokeId, long inputNanos, float... points) {
+        final StrokeCommand command = StrokeCommand.append(strokeId, Palette.DEFAULT_ID, points.length / 2);
+        System.arraycopy(points, 0, command.points, 0, points.length);
+        command.pointCount = points.length / 2;
+        command.inputNanos = inputNanos;
+        return command;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.ingest;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.realm.draw.Allocations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TouchSamplerTest {
+    private static final int ITERATIONS = 10000;
+
+    private static final class FakeSamples implements TouchSampler.Samples {
+        final float[] x;
+        final float[] y;
+        final long[] times;
+
+        FakeSamples(int count) {
+            x = new float[count];
+            y = new float[count];
+            times = new long[count];
+            for (int i = 0; i < count; i++) {
+                x[i] = 100 + i;
+                y[i] = 200 + i * 2;
+                times[i] = 1000 + i * 4;
+            }
+        }
+
+        @Override
+        public int getHistorySize() {
+            return x.length - 1;
+        }
+
+        @Override
+        public float getHistoricalX(int pos) {
+            return x[pos];
+        }
+
+        @Override
+        public float getHistoricalY(int pos) {
+            return y[pos];
+        }
+
+        @Override
+        public long getHistoricalEventTime(int pos) {
+            return times[pos];
+        }
+
+        @Override
+        public float getX() {
+            return x[x.length - 1];
+        }
+
+        @Override
+        public float getY() {
+            return y[y.length - 1];
+        }
+
+        @Override
+        public long getEventTime() {
+            return times[times.length - 1];
+        }
+    }
+
+    @Test
+    public void readsHistoricalSamplesInCanvasCoordinates() {
+        final TouchSampler sampler = new TouchSampler();
+        sampler.setTransform(100, 200, 0.5f);
+        final FakeSamples samples = new FakeSamples(3);
+
+        assertEquals(3, sampler.read(samples));
+        final float[] points = sampler.getPoints();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i * 0.5f, points[i * 2], 0);
+            assertEquals(i * 1f, points[i * 2 + 1], 0);
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), sampler.getEventTimeNanos());
+    }
+
+    @Test
+    public void growsForLargeBatches() {
+        final TouchSampler sampler = new TouchSampler();
+        sampler.setTransform(0, 0, 1);
+
+        assertEquals(500, sampler.read(new FakeSamples(500)));
+        assertEquals(599, sampler.getPoints()[499 * 2], 0);
+    }
+
+    @Test
+    public void readingEventsDoesNotAllocate() {
+        if (!Allocations.isSupported()) {
+            return;
+        }
+        final TouchSampler sampler = new TouchSampler();
+        sampler.setTransform(10, 20, 1.5f);
+        final FakeSamples samples = new FakeSamples(16);
+        // Warms up, so the buffer and the code are in their steady state.
+        for (int i = 0; i < ITERATIONS; i++) {
+            sampler.read(samples);
+        }
+
+        final long start = Allocations.allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sampler.read(samples);
+        }
+        final long allocated = Allocations.allocatedBytes() - start;
+
+        // Any allocation per event would take at least 16 bytes each.
+        assertTrue("Allocated " + allocated + " bytes", allocated < ITERATIONS);
+    }
+}
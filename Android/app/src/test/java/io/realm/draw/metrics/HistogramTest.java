@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.metrics;
+
+import org.junit.Test;
+
+import io.realm.draw.Allocations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+    private static final int VALUES = 100000;
+
+    @Test
+    public void bucketsKeepValuesWithinTheRelativeError() {
+        for (long value = 0; value < Histogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            final long highest = Histogram.highestValueAt(Histogram.indexOf(value));
+            assertTrue(value + " is counted up to " + highest, highest >= value);
+            assertTrue(value + " is counted up to " + highest, highest - value <= value * MAX_RELATIVE_ERROR);
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinTheRelativeError() {
+        final Histogram histogram = new Histogram();
+        for (int value = 1; value <= VALUES; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(VALUES, histogram.getCount());
+        assertEquals(VALUES, histogram.getMax());
+        assertEquals((VALUES + 1) / 2.0, histogram.getMean(), 1e-9);
+        assertWithinError(VALUES / 2, histogram.getValueAtPercentile(50));
+        assertWithinError(VALUES * 99 / 100, histogram.getValueAtPercentile(99));
+        assertEquals(VALUES, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped() {
+        final Histogram histogram = new Histogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Histogram.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void resetForgetsAllValues() {
+        final Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        if (!Allocations.isSupported()) {
+            return;
+        }
+        final Histogram histogram = new Histogram();
+        // Warms up, so the code is in its steady state.
+        for (int value = 0; value < VALUES; value++) {
+            histogram.record(value);
+        }
+
+        final long start = Allocations.allocatedBytes();
+        for (int value = 0; value < VALUES; value++) {
+            histogram.record(value);
+        }
+        final long allocated = Allocations.allocatedBytes() - start;
+
+        // Any allocation per value would take at least 16 bytes each.
+        assertTrue("Allocated " + allocated + " bytes", allocated < VALUES);
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * MAX_RELATIVE_ERROR);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.render;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.realm.RealmList;
+import io.realm.draw.Allocations;
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.models.DrawPath;
+import io.realm.draw.models.DrawPoint;
+import io.realm.draw.models.PointChunk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeGeometryCacheTest {
+    private static final int FRAMES = 1000;
+    private static final int STROKES = 100;
+    private static final int POINTS_PER_STROKE = 50;
+
+    private StrokeGeometryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new StrokeGeometryCache(StrokeGeometryCache.DEFAULT_MAX_POINTS,
+                StrokeGeometryCache.DEFAULT_MIN_SEGMENT_LENGTH);
+        cache.setTransform(0.5, 10, 20);
+    }
+
+    private static float[] walk(int count, int seed) {
+        final float[] points = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            points[i * 2] = seed * 3 + i * 2.5f;
+            points[i * 2 + 1] = seed * 5 + (i % 7) * 4f;
+        }
+        return points;
+    }
+
+    private static DrawPath completedStroke(int seed) {
+        final DrawPath path = new DrawPath();
+        path.setPoints(new RealmList<DrawPoint>());
+        path.setChunks(new RealmList<PointChunk>());
+        path.setPackedPoints(PointCodec.encode(walk(POINTS_PER_STROKE, seed), 0, POINTS_PER_STROKE));
+        path.setCompleted(true);
+        return path;
+    }
+
+    private static DrawPath openStroke() {
+        final DrawPath path = new DrawPath();
+        path.setPoints(new RealmList<DrawPoint>());
+        path.setChunks(new RealmList<PointChunk>());
+        return path;
+    }
+
+    private static void appendChunk(DrawPath path, int seed) {
+        final PointChunk chunk = new PointChunk();
+        chunk.setData(PointCodec.encode(walk(POINTS_PER_STROKE, seed), 0, POINTS_PER_STROKE));
+        path.getChunks().add(chunk);
+    }
+
+    @Test
+    public void growingStrokeOnlyReadsNewPoints() {
+        final Object key = new Object();
+        final DrawPath path = openStroke();
+        appendChunk(path, 1);
+        cache.get(key, path);
+        assertEquals(POINTS_PER_STROKE, cache.getLastPointCount());
+
+        appendChunk(path, 2);
+        cache.get(key, path);
+        assertEquals(POINTS_PER_STROKE * 2, cache.getLastPointCount());
+        assertEquals(POINTS_PER_STROKE * 2, cache.getCachedPoints());
+    }
+
+    @Test
+    public void removeForgetsTheStroke() {
+        final Object first = new Object();
+        final Object second = new Object();
+        cache.get(first, completedStroke(1));
+        cache.get(second, completedStroke(2));
+        assertEquals(POINTS_PER_STROKE * 2, cache.getCachedPoints());
+
+        cache.remove(first);
+        assertEquals(POINTS_PER_STROKE, cache.getCachedPoints());
+        // Removing a stroke that is not cached does nothing.
+        cache.remove(first);
+        assertEquals(POINTS_PER_STROKE, cache.getCachedPoints());
+    }
+
+    @Test
+    public void drawingCachedStrokesDoesNotAllocate() {
+        if (!Allocations.isSupported()) {
+            return;
+        }
+        final Object[] keys = new Object[STROKES + 1];
+        final DrawPath[] paths = new DrawPath[STROKES + 1];
+        for (int i = 0; i < STROKES; i++) {
+            keys[i] = new Object();
+            paths[i] = completedStroke(i);
+        }
+        // A stroke that is still being drawn, but has no new points.
+        keys[STROKES] = new Object();
+        paths[STROKES] = openStroke();
+        appendChunk(paths[STROKES], STROKES);
+        // Warms up, so the cache and the code are in their steady state.
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(keys, paths);
+        }
+
+        final long start = Allocations.allocatedBytes();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(keys, paths);
+        }
+        final long allocated = Allocations.allocatedBytes() - start;
+
+        // Any allocation per frame would take at least 16 bytes each.
+        assertTrue("Allocated " + allocated + " bytes", allocated < FRAMES);
+    }
+
+    private void drawFrame(Object[] keys, DrawPath[] paths) {
+        for (int i = 0; i < keys.length; i++) {
+            cache.get(keys[i], paths[i]);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.sensor;
+
+import android.hardware.SensorManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShakeSensorEventListenerTest {
+    // Sensor time is counted from boot, so samples never start at 0.
+    private static final long START = 10000000000L;
+    private static final long MILLIS = 1000000L;
+
+    private final List<Integer> shakes = new ArrayList<>();
+    private ShakeSensorEventListener listener;
+
+    @Before
+    public void setUp() {
+        listener = new ShakeSensorEventListener();
+        listener.setOnShakeListener(new ShakeSensorEventListener.OnShakeListener() {
+            @Override
+            public void onShake(int count) {
+                shakes.add(count);
+            }
+        });
+    }
+
+    @Test
+    public void stillDeviceDoesNotShake() {
+        for (int i = 0; i < 100; i++) {
+            sample(1, START + i * 20 * MILLIS);
+        }
+
+        assertTrue(shakes.isEmpty());
+        assertEquals(0, listener.getCandidateTimestamp());
+    }
+
+    @Test
+    public void movementBelowAShakeIsACandidate() {
+        sample(2, START);
+
+        assertTrue(shakes.isEmpty());
+        assertEquals(START, listener.getCandidateTimestamp());
+    }
+
+    @Test
+    public void samplesWithinTheSlopTimeAreOneShake() {
+        sample(3, START);
+        sample(3, START + 100 * MILLIS);
+        sample(3, START + 499 * MILLIS);
+
+        assertEquals(1, shakes.size());
+    }
+
+    @Test
+    public void shakesOfABurstAreCounted() {
+        sample(3, START);
+        sample(3, START + 600 * MILLIS);
+        sample(3, START + 1200 * MILLIS);
+        // More than three seconds later a new burst starts.
+        sample(3, START + 4300 * MILLIS);
+
+        assertEquals(4, shakes.size());
+        assertEquals(1, (int) shakes.get(0));
+        assertEquals(2, (int) shakes.get(1));
+        assertEquals(3, (int) shakes.get(2));
+        assertEquals(1, (int) shakes.get(3));
+    }
+
+    @Test
+    public void batchedSamplesAreJudgedByTheirTimestamps() {
+        // A FIFO delivers samples measured 600 ms apart in one go; they still count as two.
+        sample(3, START);
+        sample(3, START + 600 * MILLIS);
+
+        assertEquals(2, shakes.size());
+    }
+
+    // A sample of the given acceleration in g, along one axis.
+    private void sample(float gravities, long timestamp) {
+        listener.onSample(0, 0, gravities * SensorManager.GRAVITY_EARTH, timestamp);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import io.realm.draw.geometry.StrokePathBuilder;
+import io.realm.draw.geometry.StrokeSmoother;
+
+/**
+ * Stand-in for the {@code android.graphics.Path} that {@code StrokeGeometryCache} builds with a
+ * {@link StrokePathBuilder}. It receives the same segments and counts the lines the curves are
+ * flattened into when drawn, which is what rasterizing a stroke costs.
+ */
+final class CurveBuffer implements StrokeSmoother.Sink {
+    /** Largest distance in pixels between a curve and the lines it is flattened into. */
+    private static final float FLATTEN_TOLERANCE = 0.25f;
+
+    private final StrokePathBuilder builder;
+    private float lastX;
+    private float lastY;
+    private int segmentCount;
+    private int flattenedCount;
+
+    CurveBuffer(float minSegmentLength) {
+        this.builder = new StrokePathBuilder(minSegmentLength);
+    }
+
+    /**
+     * Number of lines and curves in the path.
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Number of lines the path is flattened into.
+     */
+    int getFlattenedCount() {
+        return flattenedCount;
+    }
+
+    void rewind() {
+        segmentCount = 0;
+        flattenedCount = 0;
+    }
+
+    /**
+     * Appends {@code count} interleaved x/y canvas points as a new, completed stroke.
+     */
+    void addStroke(float[] points, int count, double ratio, double marginLeft, double marginTop) {
+        builder.reset(ratio, marginLeft, marginTop);
+        builder.add(points, 0, count, this);
+        builder.finish(this);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        lastX = x;
+        lastY = y;
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        segmentCount++;
+        flattenedCount++;
+        lastX = x;
+        lastY = y;
+    }
+
+    @Override
+    public void quadTo(float controlX, float controlY, float x, float y) {
+        segmentCount++;
+        // A quadratic curve is at most a quarter of |p0 - 2c + p2| away from its chord, and
+        // splitting it in n lines divides that by n squared.
+        final float ddx = lastX - 2 * controlX + x;
+        final float ddy = lastY - 2 * controlY + y;
+        final double deviation = Math.sqrt(ddx * ddx + ddy * ddy) / 4;
+        flattenedCount += Math.max(1, (int) Math.ceil(Math.sqrt(deviation / FLATTEN_TOLERANCE)));
+        lastX = x;
+        lastY = y;
+    }
+}
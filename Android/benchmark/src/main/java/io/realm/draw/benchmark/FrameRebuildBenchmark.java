@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.SpatialGrid;
+
+/**
+ * Rebuilding the committed layer of {@code StrokeRenderer} from scratch: finding the strokes in
+ * the viewport and building their geometry, as the number of strokes on the canvas grows.
+ * Rasterization is left out; it needs the Android framework.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameRebuildBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int strokeCount;
+
+    /** Fraction of the canvas width and height that is visible. */
+    @Param({"1", "0.25"})
+    public float visibleFraction;
+
+    private static final int POINTS_PER_STROKE = 64;
+    private static final int GRID_CELLS_PER_SIDE = 32;
+    private static final float STROKE_WIDTH = 4;
+    private static final double RATIO = 683.0 / 1440.0;
+
+    private static class Stroke {
+        final byte[] packed;
+        final Bounds bounds = new Bounds();
+
+        Stroke(float[] points) {
+            packed = PointCodec.encode(points, 0, POINTS_PER_STROKE);
+            bounds.union(points, POINTS_PER_STROKE);
+        }
+    }
+
+    private final List<Stroke> strokes = new ArrayList<>();
+    private final List<Stroke> visible = new ArrayList<>();
+    private final Bounds viewport = new Bounds();
+    private final float[] points = new float[POINTS_PER_STROKE * 2];
+    private final CurveBuffer curve = new CurveBuffer(1);
+    private SpatialGrid<Stroke> index;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        index = new SpatialGrid<>(Strokes.CANVAS_SIZE, GRID_CELLS_PER_SIDE);
+        for (int i = 0; i < strokeCount; i++) {
+            final Stroke stroke = new Stroke(Strokes.create(random, POINTS_PER_STROKE));
+            strokes.add(stroke);
+            index.put(stroke, stroke.bounds);
+        }
+        final float size = Strokes.CANVAS_SIZE * visibleFraction;
+        viewport.set(0, 0, size, size);
+        viewport.inset(-STROKE_WIDTH / 2, -STROKE_WIDTH / 2);
+    }
+
+    /**
+     * Builds every stroke in the viewport, found through the spatial index.
+     */
+    @Benchmark
+    public int rebuild() {
+        curve.rewind();
+        index.query(viewport, visible);
+        for (int i = 0; i < visible.size(); i++) {
+            build(visible.get(i));
+        }
+        visible.clear();
+        return curve.getFlattenedCount();
+    }
+
+    /**
+     * Builds every stroke in the viewport, found by testing the bounds of all strokes.
+     */
+    @Benchmark
+    public int rebuildWithoutIndex() {
+        curve.rewind();
+        for (int i = 0; i < strokes.size(); i++) {
+            final Stroke stroke = strokes.get(i);
+            if (stroke.bounds.intersects(viewport)) {
+                build(stroke);
+            }
+        }
+        return curve.getFlattenedCount();
+    }
+
+    private void build(Stroke stroke) {
+        final int count = PointCodec.decode(stroke.packed, points, 0);
+        curve.addStroke(points, count, RATIO, 0, 0);
+    }
+}
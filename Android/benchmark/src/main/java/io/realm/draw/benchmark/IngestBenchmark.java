@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.ingest.FlushPolicy;
+import io.realm.draw.ingest.PointRingBuffer;
+
+/**
+ * Touch ingestion on the UI thread: converting a batch of window coordinates to canvas
+ * coordinates as {@code TouchSampler} does, buffering them and cutting them into encoded chunks
+ * as {@code StrokeIngestor} and {@code StrokeWriter} do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestBenchmark {
+    /** Samples per touch event, including the historical ones. */
+    @Param({"1", "4", "16"})
+    public int samplesPerEvent;
+
+    private static final int EVENTS = 256;
+    private static final float OFFSET_X = 120;
+    private static final float OFFSET_Y = 48;
+    private static final float RATIO = 683f / 1440f;
+
+    private final FlushPolicy flushPolicy = FlushPolicy.DEFAULT;
+    private float[] window;
+    private float[] points;
+    private float[] batch;
+    private PointRingBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        window = Strokes.create(new Random(42), EVENTS * samplesPerEvent);
+        for (int i = 0; i < window.length; i += 2) {
+            window[i] = window[i] / RATIO + OFFSET_X;
+            window[i + 1] = window[i + 1] / RATIO + OFFSET_Y;
+        }
+        points = new float[samplesPerEvent * 2];
+        batch = new float[flushPolicy.getMaxPoints() * 2];
+        buffer = new PointRingBuffer(flushPolicy.getMaxPoints());
+    }
+
+    /**
+     * Converts the samples of {@value #EVENTS} events to canvas coordinates.
+     */
+    @Benchmark
+    public float transform() {
+        float checksum = 0;
+        for (int event = 0; event < EVENTS; event++) {
+            checksum += read(event);
+        }
+        return checksum;
+    }
+
+    /**
+     * Converts, buffers and encodes the samples of {@value #EVENTS} events, returning the number
+     * of encoded bytes.
+     */
+    @Benchmark
+    public int ingest() {
+        int bytes = 0;
+        buffer.clear();
+        for (int event = 0; event < EVENTS; event++) {
+            read(event);
+            for (int i = 0; i < samplesPerEvent; i++) {
+                if (!buffer.add(points[i * 2], points[i * 2 + 1])) {
+                    bytes += flush();
+                    buffer.add(points[i * 2], points[i * 2 + 1]);
+                }
+                if (flushPolicy.shouldFlush(buffer.size())) {
+                    bytes += flush();
+                }
+            }
+        }
+        return bytes + flush();
+    }
+
+    private float read(int event) {
+        final int first = event * samplesPerEvent;
+        for (int i = 0; i < samplesPerEvent; i++) {
+            points[i * 2] = (window[(first + i) * 2] - OFFSET_X) * RATIO;
+            points[i * 2 + 1] = (window[(first + i) * 2 + 1] - OFFSET_Y) * RATIO;
+        }
+        return points[0];
+    }
+
+    private int flush() {
+        final int count = buffer.drainTo(batch, 0, buffer.size());
+        return PointCodec.encode(batch, 0, count).length;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.geometry.StrokeSimplifier;
+
+/**
+ * Building the screen space geometry of a single stroke of {@link #pointCount} points, and
+ * simplifying it when it is completed.
+ * <p>
+ * The build variants run the {@code StrokePathBuilder} of the app and return the number of lines
+ * the curve is flattened into when drawn. The simplified variant builds the curve from the points
+ * left after {@link #simplify()}, as stored for a completed stroke.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathBuildBenchmark {
+    @Param({"64", "512", "4096"})
+    public int pointCount;
+
+    /** Shortest drawn segment in pixels; 0 draws every point. */
+    @Param({"0", "1"})
+    public float minSegmentLength;
+
+    private static final double RATIO = 683.0 / 1440.0;
+
+    private final StrokeSimplifier simplifier = new StrokeSimplifier(StrokeSimplifier.DEFAULT_TOLERANCE);
+    private float[] stroke;
+    private byte[] packed;
+    private float[] points;
+    private CurveBuffer curve;
+    private float[] simplified;
+    private int simplifiedCount;
+
+    @Setup
+    public void setUp() {
+        stroke = Strokes.create(new Random(42), pointCount);
+        packed = PointCodec.encode(stroke, 0, pointCount);
+        points = new float[pointCount * 2];
+        curve = new CurveBuffer(minSegmentLength);
+        simplified = stroke.clone();
+        simplifiedCount = simplifier.simplify(simplified, pointCount);
+    }
+
+    @Benchmark
+    public int decode() {
+        return PointCodec.decode(packed, points, 0);
+    }
+
+    /**
+     * Decodes the stored points and builds their curve, as a cache miss in
+     * {@code StrokeGeometryCache} does.
+     */
+    @Benchmark
+    public int build() {
+        final int count = PointCodec.decode(packed, points, 0);
+        curve.rewind();
+        curve.addStroke(points, count, RATIO, 0, 0);
+        return curve.getFlattenedCount();
+    }
+
+    @Benchmark
+    public int buildSimplified() {
+        curve.rewind();
+        curve.addStroke(simplified, simplifiedCount, RATIO, 0, 0);
+        return curve.getFlattenedCount();
+    }
+
+    @Benchmark
+    public int simplify() {
+        System.arraycopy(stroke, 0, points, 0, stroke.length);
+        return simplifier.simplify(points, pointCount);
+    }
+}
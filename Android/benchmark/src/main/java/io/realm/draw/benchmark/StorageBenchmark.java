@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.draw.codec.PointCodec;
+import io.realm.draw.ingest.FlushPolicy;
+
+/**
+ * Writing a stroke in batches and reading it back, for both point storage formats. Realm does not
+ * run on a plain JVM, so an in-memory store stands in for it: the legacy format is a list of
+ * objects shaped like {@code DrawPoint}, the packed format a list of encoded chunks that is
+ * concatenated when the stroke completes, like {@code PathPoints.compact}.
+ * <p>
+ * The numbers measure the per-point work of each format, not the cost of Realm itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StorageBenchmark {
+    @Param({"64", "512", "4096"})
+    public int pointCount;
+
+    private static class StoredPoint {
+        double x;
+        double y;
+    }
+
+    private final int batchSize = FlushPolicy.DEFAULT.getMaxPoints();
+    private float[] stroke;
+    private float[] points;
+
+    @Setup
+    public void setUp() {
+        stroke = Strokes.create(new Random(42), pointCount);
+        points = new float[pointCount * 2];
+    }
+
+    @Benchmark
+    public int legacyRoundTrip() {
+        final List<StoredPoint> stored = new ArrayList<>();
+        for (int i = 0; i < pointCount; i++) {
+            final StoredPoint point = new StoredPoint();
+            point.x = stroke[i * 2];
+            point.y = stroke[i * 2 + 1];
+            stored.add(point);
+        }
+        for (int i = 0; i < stored.size(); i++) {
+            final StoredPoint point = stored.get(i);
+            points[i * 2] = (float) point.x;
+            points[i * 2 + 1] = (float) point.y;
+        }
+        return stored.size();
+    }
+
+    @Benchmark
+    public int packedRoundTrip() {
+        final List<byte[]> chunks = new ArrayList<>();
+        for (int first = 0; first < pointCount; first += batchSize) {
+            chunks.add(PointCodec.encode(stroke, first, Math.min(batchSize, pointCount - first)));
+        }
+
+        int length = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            length += chunks.get(i).length;
+        }
+        final byte[] packed = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            final byte[] data = chunks.get(i);
+            System.arraycopy(data, 0, packed, offset, data.length);
+            offset += data.length;
+        }
+        return PointCodec.decode(packed, points, 0);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates reproducible strokes in canvas coordinates.
+ */
+final class Strokes {
+    /** Width and height of the canvas, as in MainActivity. */
+    static final float CANVAS_SIZE = 683;
+    /** Distance between consecutive touch samples, in canvas units. */
+    private static final float STEP = 1.5f;
+
+    private Strokes() {
+    }
+
+    /**
+     * Returns a stroke of {@code pointCount} interleaved x/y points that wanders like a hand drawn
+     * line, starting at a random position.
+     */
+    static float[] create(Random random, int pointCount) {
+        final float[] points = new float[pointCount * 2];
+        float x = random.nextFloat() * CANVAS_SIZE;
+        float y = random.nextFloat() * CANVAS_SIZE;
+        double angle = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < pointCount; i++) {
+            points[i * 2] = x;
+            points[i * 2 + 1] = y;
+            angle += (random.nextDouble() - 0.5) * 0.3;
+            x = clamp(x + (float) (Math.cos(angle) * STEP));
+            y = clamp(y + (float) (Math.sin(angle) * STEP));
+        }
+        return points;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0, Math.min(CANVAS_SIZE, value));
+    }
+}
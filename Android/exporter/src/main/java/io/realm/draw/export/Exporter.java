@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Exports a stroke archive written by the app as PNG or SVG:
+ * <pre>
+ * exporter &lt;archive&gt; &lt;output.png|output.svg&gt; [size]
+ * </pre>
+ */
+public final class Exporter {
+    private static final int DEFAULT_SIZE = 4096;
+    private static final String USAGE = "Usage: exporter <archive> <output.png|output.svg> [size]";
+
+    private Exporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            exitWithUsage(null);
+        }
+        int size = DEFAULT_SIZE;
+        if (args.length > 2) {
+            try {
+                size = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                exitWithUsage("Invalid size: " + args[2]);
+            }
+            if (size <= 0) {
+                exitWithUsage("Size must be positive: " + size);
+            }
+        }
+        final StrokeArchive archive = StrokeArchive.open(new File(args[0]));
+        final File output = new File(args[1]);
+
+        final long start = System.nanoTime();
+        if (output.getName().endsWith(".svg")) {
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+            try {
+                final int strokes = SvgExporter.write(archive, size, out, TileRasterizer.DEFAULT_BATCH_SIZE);
+                System.out.println("Wrote " + strokes + " strokes");
+            } finally {
+                out.close();
+            }
+        } else {
+            final ForkJoinPool pool = new ForkJoinPool();
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+            try {
+                new TileRasterizer(pool).writePng(archive, size, out);
+            } finally {
+                out.close();
+                pool.shutdown();
+            }
+        }
+        System.out.println("Exported " + output + " (" + size + "x" + size + ") in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private static void exitWithUsage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
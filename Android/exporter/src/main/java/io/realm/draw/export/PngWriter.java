@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes an opaque RGB PNG whose rows are written from top to bottom, so an image is never held
+ * in memory as a whole. Rows use the Sub filter, which costs one subtraction per byte and
+ * compresses the large flat areas of a drawing well.
+ */
+final class PngWriter implements Closeable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_SUB = 1;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream data;
+    private final byte[] row;
+    private int rowsWritten;
+
+    PngWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 3];
+        this.data = new DeflaterOutputStream(new ChunkStream(out, "IDAT"), deflater, CHUNK_SIZE);
+
+        out.write(SIGNATURE);
+        final byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // Bits per channel.
+        header[9] = 2; // Truecolor.
+        writeChunk(out, "IHDR", header, header.length);
+    }
+
+    /**
+     * Writes {@code rows} rows of ARGB pixels, {@code stride} pixels apart in {@code pixels}.
+     * Alpha is ignored.
+     */
+    void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Image has " + height + " rows");
+        }
+        row[0] = FILTER_SUB;
+        for (int y = 0; y < rows; y++) {
+            int previous = 0;
+            int index = 1;
+            final int start = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                final int pixel = pixels[start + x];
+                row[index++] = (byte) ((pixel >> 16) - (previous >> 16));
+                row[index++] = (byte) ((pixel >> 8) - (previous >> 8));
+                row[index++] = (byte) (pixel - previous);
+                previous = pixel;
+            }
+            data.write(row);
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Finishes the image. Does not close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Wrote " + rowsWritten + " of " + height + " rows");
+        }
+        data.finish();
+        data.flush();
+        deflater.end();
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] content, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes("US-ASCII");
+        final byte[] field = new byte[4];
+        putInt(field, 0, length);
+        out.write(field);
+        out.write(typeBytes);
+        out.write(content, 0, length);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(content, 0, length);
+        putInt(field, 0, (int) crc.getValue());
+        out.write(field);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    // Collects compressed data into chunks of at most CHUNK_SIZE bytes.
+    private static final class ChunkStream extends OutputStream {
+        private final OutputStream out;
+        private final String type;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int length;
+
+        ChunkStream(OutputStream out, String type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length) {
+                flush();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == buffer.length) {
+                    flush();
+                }
+                final int copied = Math.min(count, buffer.length - length);
+                System.arraycopy(bytes, offset, buffer, length, copied);
+                length += copied;
+                offset += copied;
+                count -= copied;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (length > 0) {
+                writeChunk(out, type, buffer, length);
+                length = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Realm Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.realm.draw.export;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.realm.draw.geometry.Bounds;
+import io.realm.draw.geometry.StrokePathBuilder;
+import io.realm.draw.geometry.StrokeSmoother;
+
+/**
+ * Renders a {@link StrokeSource} into a PNG of any size with bounded memory.
+ * <p>
+ * The image is rendered in bands of whole tile rows, as many as fit into the memory budget. For
+ * each band the strokes are read again, one {@link StrokeBatch} at a time, and every batch is
+ * drawn into the tiles of the band in parallel. A tile is only drawn by one task at a time and
+ * gets the strokes in drawing order, so the output does not depend on the number of threads.
+ * Finished bands are encoded right away and dropped.
+ */
+public final class TileRasterizer {
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_BAND_BYTES = 64L * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int batchSize;
+    private final long maxBandBytes;
+
+    public TileRasterizer(ForkJoinPool pool) {
+        this(pool, DEFAULT_TILE_SIZE, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BAND_BYTES);
+    }
+
+    public TileRasterizer(ForkJoinPool pool, int tileSize, int batchSize, long maxBandBytes) {
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.batchSize = batchSize;
+        this.maxBandBytes = maxBandBytes;
+    }
+
+    /**
+     * Writes the strokes of {@code source} to {@code out} as a PNG of {@code size} by
+     * {@code size} pixels.
+     */
+    public void writePng(StrokeSource source, int size, OutputStream out) throws IOException {
+        final double ratio = source.getCanvasSize() / size;
+        final int columns = (size + tileSize - 1) / tileSize;
+        final int rows = (size + tileSize - 1) / tileSize;
+        final long bytesPerTileRow = (long) columns * tileSize * tileSize * 4;
+        final int rowsPerBand = (int) Math.max(1, Math.min(rows, maxBandBytes / bytesPerTileRow));
+
+        final StrokeBatch batch = new StrokeBatch(batchSize);
+        final int[] pixels = new int[size * tileSize];
+        final PngWriter png = new PngWriter(out, size, size);
+        for (int firstRow = 0; firstRow < rows; firstRow += rowsPerBand) {
+            final Band band = new Band(firstRow, Math.min(rowsPerBand, rows - firstRow), columns, ratio);
+            try {
+                final StrokeReader reader = source.open();
+                try {
+                    while (reader.read(batch) > 0) {
+                        pool.invoke(new DrawTiles(band, batch, 0, band.tiles.length));
+                    }
+                } finally {
+                    reader.close();
+                }
+                for (int row = 0; row < band.rows; row++) {
+                    final int top = (band.firstRow + row) * tileSize;
+                    final int height = Math.min(tileSize, size - top);
+                    for (int column = 0; column < columns; column++) {
+                        final int left = column * tileSize;
+                        final int width = Math.min(tileSize, size - left);
+                        band.tiles[row * columns + column].getRGB(0, 0, width, height, pixels, left, size);
+                    }
+                    png.writeRows(pixels, 0, size, height);
+                }
+            } finally {
+                band.dispose();
+            }
+        }
+        png.close();
+    }
+
+    private final class Band {
+        final int firstRow;
+        final int rows;
+        final int columns;
+        final double ratio;
+        final BufferedImage[] tiles;
+        final Graphics2D[] graphics;
+
+        Band(int firstRow, int rows, int columns, double ratio) {
+            this.firstRow = firstRow;
+            this.rows = rows;
+            this.columns = columns;
+            this.ratio = ratio;
+            this.tiles = new BufferedImage[rows * columns];
+            this.graphics = new Graphics2D[rows * columns];
+            final BasicStroke stroke = new BasicStroke((float) (SvgExporter.STROKE_WIDTH / ratio),
+                    BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            for (int i = 0; i < tiles.length; i++) {
+                tiles[i] = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+                final Graphics2D g = tiles[i].createGraphics();
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, tileSize, tileSize);
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                g.setStroke(stroke);
+                // Tiles are drawn in image coordinates.
+                g.translate(-(i % columns) * tileSize, -(firstRow + i / columns) * tileSize);
+                graphics[i] = g;
+            }
+        }
+
+        void dispose() {
+            for (Graphics2D g : graphics) {
+                g.dispose();
+            }
+        }
+    }
+
+    private final class DrawTiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Band band;
+        private final StrokeBatch batch;
+        private final int from;
+        private final int to;
+
+        DrawTiles(Band band, StrokeBatch batch, int from, int to) {
+            this.band = band;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new DrawTiles(band, batch, from, middle), new DrawTiles(band, batch, middle, to));
+                return;
+            }
+            final int left = (from % band.columns) * tileSize;
+            final int top = (band.firstRow + from / band.columns) * tileSize;
+            final Graphics2D g = band.graphics[from];
+            final Bounds bounds = new Bounds();
+            final PathBuilder builder = new PathBuilder();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.getBounds(i, bounds);
+                if (SvgExporter.touches(bounds, band.ratio, left, top, left + tileSize, top + tileSize)) {
+                    g.setColor(new Color(batch.getColor(i)));
+                    g.draw(builder.build(batch, i, band.ratio));
+                }
+            }
+        }
+    }
+
+    // Builds strokes like SvgExporter, so both exports draw the same curves.
+    private static final class PathBuilder implements StrokeSmoother.Sink {
+        private final StrokePathBuilder builder = new StrokePathBuilder(SvgExporter.MIN_SEGMENT_LENGTH);
+        private Path2D.Float path;
+
+        Path2D.Float build(StrokeBatch batch, int stroke, double ratio) {
+            final int count = batch.getPointCount(stroke);
+            path = new Path2D.Float(Path2D.WIND_NON_ZERO, count + 1);
+            builder.reset(ratio, 0, 0);
+            builder.add(batch.getPoints(), batch.getStart(stroke), count, this);
+            builder.finish(this);
+            return path;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            path.moveTo(x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            path.lineTo(x, y);
+        }
+
+        @Override
+        public void quadTo(float controlX, float controlY, float x, float y) {
+            path.quadTo(controlX, controlY, x, y);
+        }
+    }
+}